@@ -3,6 +3,9 @@ package console;
 import omok.*;
 import java.util.Scanner;
 public class ConsoleUI {
+    /** Largest number of rows and columns printed. */
+    static final int VIEWPORT = 21;
+
     Board board;
     Scanner scanner = new Scanner(System.in);
 
@@ -15,20 +18,27 @@ public class ConsoleUI {
     }
 
     /**
-     * Print the specified board to the console.
+     * Print the specified board to the console. Boards larger than
+     * {@link #VIEWPORT} are printed around the last move.
      */
     public void displayBoard(Board board) {
         // Clear console
         System.out.println("\033[H\033[2J");
 
+        // Pick the rows and columns to print
+        int rows = Math.min(board.size(), VIEWPORT);
+        Board.Place center = board.lastMove();
+        int x0 = viewportStart(board, center == null ? (board.size()-1)/2 : center.x, rows);
+        int y0 = viewportStart(board, center == null ? (board.size()-1)/2 : center.y, rows);
+
         // Print Top row
-        printTopRow(board.getBoard());
+        printTopRow(board, rows);
 
         // Print board
-        printBoard(board.getBoard());
+        printBoard(board, x0, y0, rows);
 
         // Print bottom row
-        printBottomRow(board.getBoard());
+        printBottomRow(board, y0, rows);
     }
 
     /**
@@ -68,6 +78,34 @@ public class ConsoleUI {
         return userInput;
     }
 
+    /**
+     * Prompts the user to select how the computer picks its moves.
+     *
+     * @return The selected engine: minimax for 1, Monte Carlo
+     * tree search for 2
+     */
+    public Computer.Engine selectEngine() {
+        displayMessage("Enter 1 for a minimax computer or 2 for a Monte Carlo computer: ");
+
+        int userInput=0;
+        while(userInput != 1 && userInput != 2) {
+            try {
+                userInput = scanner.nextInt();
+
+                if (userInput == 1 || userInput == 2) {
+                    System.out.println("You entered: " + userInput);
+                } else {
+                    System.out.print("Enter 1 or 2: ");
+                }
+                scanner.nextLine();
+            } catch (Exception e) {
+                displayMessage("Enter 1 or 2: ");
+                scanner.nextLine();
+            }
+        }
+        return userInput == 1 ? Computer.Engine.MINIMAX : Computer.Engine.MONTE_CARLO;
+    }
+
     /**
      * Prompts the player to select their next move for
      * the board. If the player is a computer, determine
@@ -77,7 +115,7 @@ public class ConsoleUI {
      */
     public String selectNextMove(Player player) {
         System.out.printf("%s's turn!\n",player.getName());
-        System.out.print("Select your move (x y): ");
+        System.out.print("Select your move (x y), or undo: ");
         return scanner.nextLine();
     }
 
@@ -92,13 +130,33 @@ public class ConsoleUI {
         }
     }
 
-    private static void printTopRow(Player[][] board) {
+    /** First row or column of a viewport of the given width centered on the given one. */
+    private static int viewportStart(Board board, int center, int width) {
+        return Math.max(0, Math.min(center - width/2, board.size() - width));
+    }
+
+    /**
+     * Return the label of the 1-based row or column i: one digit in the
+     * radix of the moves entered, see {@link omok.Game#radix()}, which
+     * falls back to decimal on boards too large for that.
+     */
+    private static String label(Board board, int i) {
+        return Integer.toString(i, board.size()+1).toUpperCase();
+    }
+
+    /** Width of the widest label. */
+    private static int labelWidth(Board board) {
+        return label(board, board.size()).length();
+    }
+
+    private static void printTopRow(Board board, int columns) {
         System.out.print("Y ");
+        int width = columns * (labelWidth(board)+2);
         StringBuilder top_row = new StringBuilder();
-        for(int i=0; i< board.length*3; i++) {
-            if(i<(board.length*3)/2-3 || i>(board.length*3)/2+3) {
+        for(int i=0; i< width; i++) {
+            if(i<width/2-3 || i>width/2+3) {
                 top_row.append(" ");
-            } else if(i == (board.length*3)/2) {
+            } else if(i == width/2) {
                 top_row.append("Omok omok.Game");
             }
         }
@@ -106,27 +164,29 @@ public class ConsoleUI {
         System.out.println();
     }
 
-    private static void printBoard(Player[][] board) {
-        for(int i=1; i<board.length+1; i++) {
-            if(i<10) { System.out.printf("%1s│ ",i); }
-            else     { System.out.printf("%1s│ ",(char)(i+55)); }
+    private static void printBoard(Board board, int x0, int y0, int rows) {
+        int width = labelWidth(board);
+        for(int i=x0+1; i<x0+rows+1; i++) {
+            System.out.printf("%" + width + "s│ ", label(board, i));
 
-            for(Player player : board[i-1]) {
+            for(int col=y0; col<y0+rows; col++) {
+                Player player = board.playerAt(i-1, col);
                 if(player == null) {
-                    System.out.printf(" %s ", '•');
+                    System.out.printf(" %-" + width + "s ", '•');
                 } else {
-                    System.out.printf(" %s ", player.getStone());
+                    System.out.printf(" %-" + width + "s ", player.getStone());
                 }
             }
             System.out.println(" │");
         }
     }
 
-    private static void printBottomRow(Player[][] board) {
+    private static void printBottomRow(Board board, int y0, int columns) {
+        int width = labelWidth(board);
         StringBuilder bottom_row = new StringBuilder();
-        for(int i=1; i<board.length+1; i++) {
-            bottom_row.append(" ").append(Integer.toString(i,board.length+1).toUpperCase()).append(" ");
+        for(int i=y0+1; i<y0+columns+1; i++) {
+            bottom_row.append(" ").append(String.format("%-" + width + "s", label(board, i))).append(" ");
         }
-        System.out.printf(" ╵ %s ╵X\n",bottom_row);
+        System.out.printf("%" + width + "s╵ %s ╵X\n", "", bottom_row);
     }
 }
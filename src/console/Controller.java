@@ -33,15 +33,20 @@ public class Controller {
             player1 = new Player("player1", 'X');
             player2 = new Player("player2", 'O');
         } else if(gameType == 2) { // Human vs. omok.Computer
+            Computer.Engine engine = omokConsole.selectEngine();
             player1 = new Player("player1", 'X');
             player2 = new Computer("computer1",'O',3);
             ((Computer) player2 ).setOpponent(player1);
+            ((Computer) player2).setEngine(engine);
+            ((Computer) player2).setPondering(true);
         } else {
+            Computer.Engine engine = omokConsole.selectEngine();
             player1 = new Computer("Computer1",'X',3);
             player2 = new Computer("Computer2",'O',3);
             ((Computer) player1).setOpponent(player2);
             ((Computer) player2).setOpponent(player1);
-
+            ((Computer) player1).setEngine(engine);
+            ((Computer) player2).setEngine(engine);
         }
         game = new Game(board, new ArrayList<>(Arrays.asList(player1, player2)));
 
@@ -80,16 +85,23 @@ public class Controller {
     public void gameTurn(Player currentPlayer) {
         if(currentPlayer.getClass() == Computer.class) {
             int[] move = ((Computer) currentPlayer).makeMove(board);
-            board.placeStone(move[0],move[1],currentPlayer);
+            board.makeMove(move[0],move[1],currentPlayer);
+            ((Computer) currentPlayer).ponder(board); // while the other player thinks
             return;
         }
 
         // Prompt the player for move
         String move = omokConsole.selectNextMove(currentPlayer);
 
-        // Determine if move is valid; keep prompting for move
-        while(!game.moveIsValid(move)) {
-            omokConsole.displayMessage("Move is invalid :(\n");
+        // Keep prompting for a valid move; taking back an odd number
+        // of moves hands the turn to the other player
+        while(game.isUndo(move) || !game.moveIsValid(move)) {
+            if(game.isUndo(move)) {
+                if(game.takeBack() % 2 == 1) return;
+                omokConsole.displayBoard(board);
+            } else {
+                omokConsole.displayMessage("Move is invalid :(\n");
+            }
             move = omokConsole.selectNextMove(currentPlayer);
         }
 
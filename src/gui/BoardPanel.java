@@ -4,10 +4,11 @@ import javax.swing.*;
 
 import omok.Computer;
 import omok.Game;
+import omok.Move;
 import omok.Player;
 import omok.Board;
+import omok.SearchHandle;
 import java.awt.*;
-import java.util.List;
 import java.util.Queue;
 
 public class BoardPanel extends JPanel {
@@ -15,11 +16,14 @@ public class BoardPanel extends JPanel {
     private Game game;
     private Queue<Player> players;
     private final BoardButton[][] positions;
+    private final ButtonModel[][] models; // the models the buttons were made with, restored by undo
+    private SearchHandle search; // the computer's move under way, or null
     ButtonsListener listener;
 
     public BoardPanel(Board board) { // CHANGE TO SINGLETON METHOD
         this.board = board;
         positions = new BoardButton[board.size()][board.size()];
+        models = new ButtonModel[board.size()][board.size()];
 
         setLayout(new GridLayout(board.size(),board.size()));
         setPreferredSize(new Dimension(500,500));
@@ -55,6 +59,7 @@ public class BoardPanel extends JPanel {
                 BoardButton b = BoardButton.generateBoardButton(row,col);
                 b.addMouseListener(listener);
                 b.addActionListener(e -> {
+                    if(search != null) return; // the computer is thinking
                     BoardPanel bp = (BoardPanel) b.getParent();
 
                     Player currentPlayer = players.poll();
@@ -62,7 +67,8 @@ public class BoardPanel extends JPanel {
                     b.setDraw(3);
 
                     Board board = bp.getBoard();
-                    board.placeStone( b.x, b.y, currentPlayer);
+                    board.makeMove( b.x, b.y, currentPlayer);
+                    players.offer(currentPlayer); // also when the game is over, so that undo finds the turns in order
 
                     if(game.gameOver()) {
                         Iterable<Board.Place> winner = board.winningRow();
@@ -74,7 +80,6 @@ public class BoardPanel extends JPanel {
                         return;
                     }
                     bp.disableButton(b);
-                    players.offer(currentPlayer);
 
                     System.out.println(players.peek().getClass());
                     if(players.peek().getClass() == Computer.class) {
@@ -84,27 +89,81 @@ public class BoardPanel extends JPanel {
                     }
                 });
                 positions[row][col] = b;
+                models[row][col] = b.getModel();
                 add(positions[row][col]);
             }
         }
     }
 
+    /**
+     * Let the computer search for its move without blocking the buttons;
+     * the move is played on the event thread once found.
+     */
     public void computerTurn(Computer currentPlayer) {
-        int[] move = currentPlayer.makeMove(board);
-        BoardButton currentButton = positions[move[0]][move[1]];
+        SearchHandle handle = currentPlayer.startMove(board);
+        search = handle;
+        handle.result().whenComplete((move, failure) -> SwingUtilities.invokeLater(() -> {
+            if(search != handle) return; // cancelled
+            if(move != null) {
+                playComputerMove(currentPlayer, move);
+            } else {
+                search = null;
+                failure.printStackTrace();
+            }
+        }));
+    }
+
+    private void playComputerMove(Computer currentPlayer, Move move) {
+        search = null;
+        BoardButton currentButton = positions[move.x][move.y];
         currentButton.setStoneColor(currentPlayer.getColor());
         currentButton.setDraw(3);
         disableButton(currentButton);
-        board.placeStone(move[0],move[1],currentPlayer);
+        board.makeMove(move.x,move.y,currentPlayer);
         if(game.gameOver()) {
-            List<Board.Place> winner = board.nInARow(5,currentPlayer);
+            Iterable<Board.Place> winner = board.winningRow();
             for(Board.Place place : winner) {
                 positions[place.x][place.y].setDraw(4);
             }
             JOptionPane.showMessageDialog(this, currentPlayer.getName() + " has won!");
             disableButtons();
+        } else {
+            currentPlayer.ponder(board); // while the player thinks
         }
+    }
 
+    /**
+     * Cancel the computer's search for a move, if one is under way.
+     *
+     * @return whether a search was cancelled
+     */
+    public boolean cancelSearch() {
+        if(search == null) return false;
+        search.cancel();
+        search = null;
+        return true;
+    }
+
+    /**
+     * Take back the last move, and the computer's reply before it, and
+     * bring the buttons in line with the board again.
+     */
+    public void undo() {
+        // A cancelled computer move counts as one taken back
+        int taken = cancelSearch() ? 1 : 0;
+        if((game.takeBack() + taken) % 2 == 1) players.offer(players.poll());
+
+        for(int row = 0; row < positions.length; row++) {
+            for(int col = 0; col < positions[row].length; col++) {
+                BoardButton button = positions[row][col];
+                if(board.isEmpty(row, col)) {
+                    button.setDraw(1);
+                    button.setModel(models[row][col]);
+                } else if(button.getDraw() == 4) {
+                    button.setDraw(3); // no longer part of a winning row
+                }
+            }
+        }
     }
 
     private void disableButton(BoardButton button) {
@@ -28,6 +28,7 @@ public class GUI extends JFrame {
     Queue<Player> playerQueue = new LinkedList<>();
     int gameType=1; // default player vs. player
     int computerDifficulty=3;
+    Computer.Engine engine=Computer.Engine.MINIMAX; // default
 
     // Menu attributes
     JMenuBar menuBar;
@@ -73,6 +74,7 @@ public class GUI extends JFrame {
     }
 
     private void initNewGame() {
+        if(player2 instanceof Computer) ((Computer)player2).stopPondering();
         playerQueue.clear();
         board = new Board(boardSize);
 
@@ -81,6 +83,8 @@ public class GUI extends JFrame {
         else {
             player2 = new Computer("Player2", new Color(173, 78, 213), computerDifficulty);
             ((Computer)player2).setOpponent(player1);
+            ((Computer)player2).setEngine(engine);
+            ((Computer)player2).setPondering(true);
         }
         game = new Game(board, new ArrayList<>(Arrays.asList(player1, player2)));
 
@@ -138,6 +142,7 @@ public class GUI extends JFrame {
         menuItem.addActionListener(e -> {
             int user_choice = JOptionPane.showConfirmDialog(GUI.this, "Are you sure you want to start a new game?", "New Game!", JOptionPane.YES_NO_OPTION, JOptionPane.PLAIN_MESSAGE);
             if (user_choice == 0) { // 0 is yes, 1 is no
+                boardGUI.cancelSearch();
                 boardConstrain.remove(boardGUI);
                 initNewGame();
                 getOmokBoardGUI();
@@ -149,6 +154,12 @@ public class GUI extends JFrame {
         submenu.add(menuItem);
         menu.add(submenu);
 
+        menuItem = new JMenuItem("Undo");
+        menuItem.setAccelerator(KeyStroke.getKeyStroke(
+                KeyEvent.VK_Z, InputEvent.CTRL_DOWN_MASK));
+        menuItem.addActionListener(e -> boardGUI.undo());
+        menu.add(menuItem);
+
         //a group of JMenuItems
         menu.addSeparator();
         menuItem = new JMenuItem("Instructions",
@@ -170,7 +181,21 @@ public class GUI extends JFrame {
         menu = new JMenu("Settings");
         menu.setMnemonic(KeyEvent.VK_N);
         menu.getAccessibleContext().setAccessibleDescription(
-                "This menu does nothing");
+                "Settings of the computer player");
         menuBar.add(menu);
+
+        //How the computer picks its moves, from the next new game on
+        group = new ButtonGroup();
+        rbMenuItem = new JRadioButtonMenuItem("Minimax Engine",true);
+        rbMenuItem.setMnemonic(KeyEvent.VK_M);
+        rbMenuItem.addActionListener(e -> engine = Computer.Engine.MINIMAX);
+        group.add(rbMenuItem);
+        menu.add(rbMenuItem);
+
+        rbMenuItem = new JRadioButtonMenuItem("Monte Carlo Engine");
+        rbMenuItem.setMnemonic(KeyEvent.VK_T);
+        rbMenuItem.addActionListener(e -> engine = Computer.Engine.MONTE_CARLO);
+        group.add(rbMenuItem);
+        menu.add(rbMenuItem);
     }
 }
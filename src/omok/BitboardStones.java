@@ -0,0 +1,167 @@
+package omok;
+
+import java.util.Arrays;
+
+/**
+ * Bitboard storage for a {@link Board}. The stones of each side are kept
+ * in a packed bitset where the intersection (x, y) is bit x * n + y, the
+ * index of the place, so a place is read with a shift and a mask. Runs of
+ * stones are found for the whole board at once by shifting the bitset and
+ * and-ing it with itself, see {@link #firstRun}. A 15x15 board fits in
+ * four longs per side.
+ */
+class BitboardStones implements Stones {
+    private final int size;
+    private final Player[] sides;
+    private final long[][] bits;
+
+    /**
+     * Create an empty bitboard.
+     *
+     * @param size  number of rows and columns
+     * @param sides side table of the owning board; index 0 and 1 name the
+     *              players whose stones are kept in {@code bits[0]} and
+     *              {@code bits[1]}
+     */
+    BitboardStones(int size, Player[] sides) {
+        this.size = size;
+        this.sides = sides;
+        this.bits = new long[2][(size * size + 63) >>> 6];
+    }
+
+    @Override
+    public Player get(int x, int y) {
+        return get(index(x, y));
+    }
+
+    @Override
+    public Player get(int index) {
+        if (index < 0 || index >= size * size) {
+            throw new ArrayIndexOutOfBoundsException("Index " + index + " out of bounds for size " + size);
+        }
+        long mask = 1L << index;
+        if ((bits[0][index >>> 6] & mask) != 0) return sides[0];
+        if ((bits[1][index >>> 6] & mask) != 0) return sides[1];
+        return null;
+    }
+
+    @Override
+    public void set(int x, int y, Player player) {
+        int i = index(x, y);
+        long mask = 1L << i;
+        bits[0][i >>> 6] &= ~mask;
+        bits[1][i >>> 6] &= ~mask;
+        if (player != null) {
+            bits[player == sides[0] ? 0 : 1][i >>> 6] |= mask;
+        }
+    }
+
+    @Override
+    public void clear() {
+        Arrays.fill(bits[0], 0L);
+        Arrays.fill(bits[1], 0L);
+    }
+
+    @Override
+    public boolean isFull() {
+        long stones = 0;
+        for (int i = 0; i < bits[0].length; i++) {
+            stones += Long.bitCount(bits[0][i] | bits[1][i]);
+        }
+        return stones == (long) size * size;
+    }
+
+    /** Return a new grid holding the current stones; writes to it are not seen by the board. */
+    @Override
+    public Player[][] toArray() {
+        Player[][] board = new Player[size][size];
+        for (int x = 0; x < size; x++) {
+            for (int y = 0; y < size; y++) {
+                board[x][y] = get(x, y);
+            }
+        }
+        return board;
+    }
+
+    @Override
+    public Stones copy(Player[] sides) {
+        BitboardStones copy = new BitboardStones(size, sides);
+        System.arraycopy(bits[0], 0, copy.bits[0], 0, bits[0].length);
+        System.arraycopy(bits[1], 0, copy.bits[1], 0, bits[1].length);
+        return copy;
+    }
+
+    /**
+     * Find the first run of n stones of the side in the order of a scan
+     * over the lines of the board, as {@link Board#nInARow} makes it.
+     * The runs along a direction start where the bitset and-ed with
+     * itself shifted by 1 to n - 1 steps still has a bit; a run that
+     * wrapped from one row onto the next is told by its column and
+     * dropped.
+     *
+     * @return line << 32 | offset of the first stone of the run, or
+     *         Long.MAX_VALUE if there is none
+     */
+    long firstRun(int n, int side, Geometry.Lines lines) {
+        // Strides of Geometry.DIRECTIONS; the last one walks the inverted
+        // diagonal backwards, from its last stone along the line to its first
+        int[] strides = {1, size, size + 1, size - 1};
+        for (int d = 0; d < strides.length; d++) {
+            long[] runs = runs(bits[side], strides[d], n);
+            long first = Long.MAX_VALUE;
+            for (int i = next(runs, -1); i >= 0; i = next(runs, i)) {
+                int y = i % size;
+                if (d == 3 ? y < n - 1 : d != 1 && y > size - n) continue; // wrapped
+                int start = d == 3 ? i + (n - 1) * strides[d] : i;
+                first = Math.min(first, (long) lines.line(d, start) << 32 | lines.offset(d, start));
+            }
+            // The lines of a direction all come before those of the next
+            if (first != Long.MAX_VALUE) return first;
+        }
+        return Long.MAX_VALUE;
+    }
+
+    /**
+     * Return a bitset with bit i set when bits i, i + stride, ...,
+     * i + (n - 1) * stride are all set in b.
+     */
+    private static long[] runs(long[] b, int stride, int n) {
+        long[] runs = b.clone();
+        for (int k = 1; k < n; k++) {
+            andShifted(runs, b, k * stride);
+        }
+        return runs;
+    }
+
+    /** runs &= b >>> shift, treating the arrays as one little-endian bitset. */
+    private static void andShifted(long[] runs, long[] b, int shift) {
+        int words = shift >>> 6;
+        int offset = shift & 63;
+        for (int i = 0; i < runs.length; i++) {
+            int j = i + words;
+            long shifted = j < b.length ? b[j] >>> offset : 0L;
+            if (offset != 0 && j + 1 < b.length) shifted |= b[j + 1] << (64 - offset);
+            runs[i] &= shifted;
+        }
+    }
+
+    /** Index of the lowest set bit above i, or -1. */
+    private static int next(long[] b, int i) {
+        i++;
+        int w = i >>> 6;
+        if (w >= b.length) return -1;
+        long word = b[w] & (-1L << i);
+        while (true) {
+            if (word != 0) return (w << 6) + Long.numberOfTrailingZeros(word);
+            if (++w == b.length) return -1;
+            word = b[w];
+        }
+    }
+
+    private int index(int x, int y) {
+        if (x < 0 || y < 0 || x >= size || y >= size) {
+            throw new ArrayIndexOutOfBoundsException("Index (" + x + ", " + y + ") out of bounds for size " + size);
+        }
+        return x * size + y;
+    }
+}
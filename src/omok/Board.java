@@ -1,7 +1,9 @@
 package omok;
 
+import java.util.AbstractList;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
 
@@ -16,9 +18,97 @@ import java.util.List;
 public class Board {
 
     private static Board boardInstance;
-    private final Player[][] board;
+    private Stones stones;
+    private final Storage storage;
     private final int size;
-    private List<Place> occupiedPositions;
+    private Player[] sides = new Player[2];
+    private final Geometry geometry;
+
+    /**
+     * Whether this board may share its stones, side table and occupied
+     * places with a snapshot. A shared board copies them before its
+     * first write, so boards never see each other's changes.
+     */
+    private boolean shared;
+
+    /** Zobrist hash of the stones, updated by {@link #placeStone}. */
+    private long hash;
+
+    /** Places holding a stone, as indices x * size + y; its size is the number of stones. */
+    private IndexSet occupied;
+    private final List<Place> occupiedPositions = new AbstractList<>() {
+        @Override
+        public Place get(int i) {
+            return geometry.place(occupied.get(i));
+        }
+
+        @Override
+        public int size() {
+            return occupied.size();
+        }
+    };
+
+    /**
+     * Indices of the stones placed with {@link #makeMove}, oldest first.
+     * Shared with snapshots like the stones.
+     */
+    private int[] moves = new int[16];
+    private int moveCount;
+
+    /** Number of runs of five stones, counted per side and position of the run. */
+    private final int[] fives = new int[2];
+
+    /** Threats of both sides, updated by {@link #placeStone}. Shared with snapshots like the stones. */
+    private ThreatMap threats = new ThreatMap();
+
+    /** A known winning row, or null if it has not been found yet. */
+    private List<Place> winningCells;
+
+    /**
+     * Whether the live grid has been handed out by {@link #getBoard()}, or
+     * a third player has placed a stone on a grid board. The board cannot
+     * see writes through the grid, and only tracks two sides, so from then
+     * on it answers {@link #isWonBy(Player)} and {@link #winningRow()} by
+     * scanning. A snapshot of it gets a grid of its own and counts its
+     * stones afresh, see {@link #recount()}.
+     */
+    private boolean exposed;
+
+    /**
+     * How a board keeps its stones. {@link #GRID} keeps a grid of player
+     * references and hands out the live grid from {@link #getBoard()}.
+     * {@link #BITBOARD} packs the stones of each player into a bitset,
+     * which is an order of magnitude smaller and lets the board find runs
+     * of stones, for {@link #nInARow} and the winning row, with word-wide
+     * operations instead of visiting every intersection; its
+     * {@link #getBoard()} returns a copy.
+     * {@link #SPARSE} keeps only the occupied intersections in a hash map,
+     * so memory and the scans of the board follow the number of stones
+     * rather than the area; it is meant for boards up to
+     * {@link #MAX_SPARSE_SIZE}, far larger than a grid can hold, and its
+     * {@link #getBoard()} returns a full-size copy. Bitboards and sparse
+     * boards hold the stones of two players only.
+     */
+    public enum Storage { GRID, BITBOARD, SPARSE }
+
+    /**
+     * Threats a player can have along one line, counted by
+     * {@link #threats(Player, Threat)}. In the shapes below 1 is a stone
+     * of the player and 0 an empty place.
+     * <ul>
+     * <li>{@link #FIVE}: five in a row, 11111; a longer row counts once for every five in it.</li>
+     * <li>{@link #OPEN_FOUR}: 011110, which can be made five at either end.</li>
+     * <li>{@link #FOUR}: four stones and an empty place in a window of
+     *     five, like 11110 or 11011, that are not part of an open four.</li>
+     * <li>{@link #OPEN_THREE}: 01110 with one more empty place on either
+     *     side, so that it can become an open four.</li>
+     * <li>{@link #SPLIT_THREE}: 011010 or 010110.</li>
+     * </ul>
+     */
+    public enum Threat { FIVE, OPEN_FOUR, FOUR, OPEN_THREE, SPLIT_THREE }
+
+    /** Largest size of a sparse board: its indices x * size + y must fit in an int. */
+    public static final int MAX_SPARSE_SIZE = 46340;
 
     /** Create a new board of the default size. */
     public Board() throws NegativeArraySizeException {
@@ -27,9 +117,56 @@ public class Board {
 
     /** Create a new board of the specified size. */
     public Board(int size) throws NegativeArraySizeException {
+        this(size, Storage.GRID);
+    }
+
+    /**
+     * Create a new board of the specified size and storage.
+     *
+     * @throws IllegalArgumentException if a sparse board would be larger
+     *                                  than {@link #MAX_SPARSE_SIZE}
+     */
+    public Board(int size, Storage storage) throws NegativeArraySizeException {
+        if (size < 0) throw new NegativeArraySizeException(String.valueOf(size));
+        if (storage == Storage.SPARSE && size > MAX_SPARSE_SIZE) {
+            throw new IllegalArgumentException("Sparse boards are at most " + MAX_SPARSE_SIZE + " wide, not " + size);
+        }
         this.size = size;
-        this.board = new Player[this.size][this.size];
-        this.occupiedPositions = new ArrayList<>();
+        this.storage = storage;
+        this.geometry = Geometry.of(size);
+        switch (storage) {
+            case BITBOARD -> {
+                stones = new BitboardStones(size, sides);
+                occupied = new IndexSet(size * size);
+            }
+            case SPARSE -> {
+                stones = new SparseStones(size, sides);
+                occupied = IndexSet.sparse(size * size);
+            }
+            default -> {
+                stones = new GridStones(size);
+                occupied = new IndexSet(size * size);
+            }
+        }
+    }
+
+    /** Create a snapshot of the other board that shares its storage until either is written. */
+    private Board(Board other) {
+        this.size = other.size;
+        this.storage = other.storage;
+        this.geometry = other.geometry;
+        this.hash = other.hash;
+        this.sides = other.sides;
+        this.stones = other.stones;
+        this.occupied = other.occupied;
+        this.threats = other.threats;
+        this.moves = other.moves;
+        this.moveCount = other.moveCount;
+        this.shared = other.shared = true;
+        System.arraycopy(other.fives, 0, this.fives, 0, fives.length);
+        this.winningCells = other.winningCells;
+        // Cleared by snapshot() once the copy has a grid of its own
+        this.exposed = other.exposed;
     }
 
     public static Board getBoardInstance() {
@@ -40,41 +177,178 @@ public class Board {
     }
 
     /**
-     * Returns the board
+     * Returns the board. With {@link Storage#GRID} this is the live grid;
+     * with {@link Storage#BITBOARD} it is a copy of the current stones.
      */
     public Player[][] getBoard() {
-        return board;
+        if (storage == Storage.GRID) {
+            unshare();
+            exposed = true;
+        }
+        return stones.toArray();
+    }
+
+    /**
+     * Return a snapshot of this board. Taking a snapshot costs the same
+     * for every board size: the two boards share their stones until one
+     * of them is written, and the first write to either copies them.
+     * Reading a snapshot is therefore free for consumers that never write
+     * to it, and a snapshot is fully independent of this board once
+     * written. Snapshots of one board may be handed to different threads,
+     * as long as each board is only used by one thread at a time.
+     */
+    public Board snapshot() {
+        Board snapshot = new Board(this);
+        if (exposed) {
+            // The caller may still write to the grid handed out by getBoard(), so copy it now
+            snapshot.unshare();
+            shared = false;
+            snapshot.recount();
+        }
+        return snapshot;
     }
 
+    /**
+     * Count the stones, hash, fives and threats afresh from the stones of
+     * a private grid, which nobody else can write to, so that the board no
+     * longer has to scan for them. A board with stones of a third player
+     * stays exposed.
+     */
+    private void recount() {
+        occupied.clear();
+        hash = 0;
+        Arrays.fill(fives, 0);
+        winningCells = null;
+        exposed = false;
+        for (int x = 0; x < size; x++) {
+            for (int y = 0; y < size; y++) {
+                Player player = at(x, y);
+                if (player == null) continue;
+                occupied.add(x * size + y);
+                if (side(player) < 0) exposed = true;
+            }
+        }
+        if (exposed) return;
+
+        for (int s = 0; s < occupied.size(); s++) {
+            int index = occupied.get(s);
+            int x = index / size, y = index % size;
+            Player player = at(x, y);
+            int side = side(player);
+            hash ^= geometry.key(index, side);
+            // Count each run once, from its first stone
+            for (int[] d : Geometry.DIRECTIONS) {
+                if (run(x, y, -d[0], -d[1], player, 1) > 0) continue;
+                int length = 1 + run(x, y, d[0], d[1], player, size);
+                if (length >= 5) fives[side] += length - 4;
+            }
+        }
+        threats.rebuild(this);
+    }
+
+    /** Take private copies of the storage shared with snapshots, if any. */
+    private void unshare() {
+        if (!shared) return;
+        sides = sides.clone();
+        stones = stones.copy(sides);
+        occupied = occupied.copy();
+        threats = threats.copy();
+        moves = moves.clone();
+        shared = false;
+    }
+
+    /**
+     * Return the places holding a stone placed with {@link #placeStone}.
+     * The list is a read-only view that follows the board; its order is
+     * not the order in which the stones were placed.
+     */
     public List<Place> getOccupiedPositions () {
         return occupiedPositions;
     }
 
+    /**
+     * Return the index of the i-th place in {@link #getOccupiedPositions()}
+     * without going through a {@link Place}.
+     *
+     * @param i 0-based position in the list, less than {@link #stoneCount()}
+     */
+    public int occupiedIndex(int i) {
+        return occupied.get(i);
+    }
+
+    /** Return the number of stones placed with {@link #placeStone}. */
+    public int stoneCount() {
+        return occupied.size();
+    }
+
     /** Return the size of this board. */
     public int size() {
         return size;
     }
 
+    /** Return how this board keeps its stones. */
+    public Storage storage() {
+        return storage;
+    }
+
     /** Removes all the stones placed on the board, effectively
      * resetting the board to its original state.
      */
     public void clear() {
-        for(Player[] row : board) {
-            Arrays.fill(row, null);
-        }
-        occupiedPositions.clear();
+        unshare();
+        stones.clear();
+        occupied.clear();
+        threats.clear();
+        moveCount = 0;
+        Arrays.fill(sides, null);
+        Arrays.fill(fives, 0);
+        winningCells = null;
+        hash = 0;
     }
 
     /** Return a boolean value indicating whether all the places
      * on the board are occupied or not.
      */
     public boolean isFull() {
-        for(Player[] row : board) {
-            for (Player element : row) {
-                if (element == null) return false; // if it has an empty spot, it is not full
-            }
+        if (exposed) return stones.isFull();
+        return occupied.size() == (long) size * size;
+    }
+
+    /**
+     * Return the index of the intersection (x, y): x * size + y. An index
+     * names a place with a single int, and the methods taking one are the
+     * cheapest way to read and change the board.
+     *
+     * @param x 0-based column (vertical) index
+     * @param y 0-based row (horizontal) index
+     */
+    public int index(int x, int y) throws ArrayIndexOutOfBoundsException {
+        if (x < 0 || y < 0 || x >= size || y >= size) {
+            throw new ArrayIndexOutOfBoundsException("Place (" + x + ", " + y + ") is not on a board of size " + size);
+        }
+        return x * size + y;
+    }
+
+    /**
+     * Return the place with the given index. Boards of the same size share
+     * one place object per index, so this does not allocate.
+     */
+    public Place place(int index) throws ArrayIndexOutOfBoundsException {
+        if (index < 0 || index >= size * size) {
+            throw new ArrayIndexOutOfBoundsException("Index " + index + " is not on a board of size " + size);
         }
-        return true;
+        return geometry.place(index);
+    }
+
+    /**
+     * Place a stone for the specified player at the intersection with
+     * the given index.
+     *
+     * @param index  index of the intersection, see {@link #index(int, int)}
+     * @param player omok.Player whose stone is to be placed, or null to remove a stone
+     */
+    public void placeStone(int index, Player player) throws ArrayIndexOutOfBoundsException {
+        placeStone(index / size, index % size, player);
     }
 
     /**
@@ -86,20 +360,80 @@ public class Board {
      * @param player omok.Player whose stone is to be placed
      */
     public void placeStone(int x, int y, Player player) throws ArrayIndexOutOfBoundsException {
-        board[x][y] = player;
+        unshare();
+        Player previous = stones.get(x, y);
+        int side = player == null ? -1 : side(player);
+        if (player != null && side < 0) exposed = true; // a third player on a grid board
+        boolean changed = previous != player && !exposed;
+        if (previous != null && !exposed) {
+            forgetFives(x, y, previous);
+            hash ^= geometry.key(x * size + y, side(previous));
+        }
+        if (changed) threats.update(this, x * size + y, -1);
+        stones.set(x, y, player);
+        if (changed) threats.update(this, x * size + y, 1);
+        if (player != null && !exposed) {
+            recordFives(x, y, side);
+            hash ^= geometry.key(x * size + y, side);
+        }
 
         if(player == null) {
-            for(Place position : occupiedPositions) {
-                if(position.x == x && position.y == y) {
-                    occupiedPositions.remove(position);
-                    break;
-                }
-            }
+            occupied.remove(x * size + y);
         } else {
-            occupiedPositions.add(new Place(x,y));
+            occupied.add(x * size + y);
         }
     }
 
+    /**
+     * Place a stone for the player on the empty intersection with the
+     * given index and push it on the move stack, so that
+     * {@link #unmakeMove()} can take it back.
+     *
+     * @param index  index of the intersection, see {@link #index(int, int)}
+     * @param player omok.Player whose stone is to be placed
+     * @throws IllegalArgumentException if the intersection is not empty
+     */
+    public void makeMove(int index, Player player) throws ArrayIndexOutOfBoundsException {
+        Place place = place(index);
+        if (!isEmpty(index)) {
+            throw new IllegalArgumentException("Place (" + place.x + ", " + place.y + ") is not empty");
+        }
+        placeStone(index, player);
+        if (moveCount == moves.length) moves = Arrays.copyOf(moves, 2 * moveCount);
+        moves[moveCount++] = index;
+    }
+
+    /** Same as {@link #makeMove(int, Player)} for the intersection (x, y). */
+    public void makeMove(int x, int y, Player player) throws ArrayIndexOutOfBoundsException {
+        makeMove(index(x, y), player);
+    }
+
+    /**
+     * Take back the last move made with {@link #makeMove}. The stone is
+     * removed with the same local updates that placed it, so the hash,
+     * the counts and the winner are exactly as they were before the move.
+     *
+     * @return the place of the move taken back
+     * @throws IllegalStateException if there is no move to take back
+     */
+    public Place unmakeMove() {
+        if (moveCount == 0) throw new IllegalStateException("No move to take back");
+        int index = moves[moveCount - 1];
+        placeStone(index, null);
+        moveCount--;
+        return geometry.place(index);
+    }
+
+    /** Return the number of moves on the move stack. */
+    public int moveCount() {
+        return moveCount;
+    }
+
+    /** Return the place of the last move made with {@link #makeMove}, or null if there is none. */
+    public Place lastMove() {
+        return moveCount == 0 ? null : geometry.place(moves[moveCount - 1]);
+    }
+
     /**
      * Return a boolean value indicating whether the specified
      * intersection (x, y) on the board is empty or not.
@@ -108,7 +442,17 @@ public class Board {
      * @param y 0-based row (horizontal) index
      */
     public boolean isEmpty(int x, int y) {
-        return board[x][y]==null;
+        return stones.get(x, y)==null;
+    }
+
+    /**
+     * Return a boolean value indicating whether the intersection with the
+     * given index is empty or not.
+     *
+     * @param index index of the intersection, see {@link #index(int, int)}
+     */
+    public boolean isEmpty(int index) {
+        return stones.get(index)==null;
     }
 
     /**
@@ -118,7 +462,7 @@ public class Board {
      * @param y 0-based row (horizontal) index
      */
     public boolean isOccupied(int x, int y) {
-        return board[x][y]!=null;
+        return stones.get(x, y)!=null;
     }
 
     /**
@@ -130,7 +474,7 @@ public class Board {
      * @param y 0-based row (horizontal) index
      */
     public boolean isOccupiedBy(int x, int y, Player player) {
-        return board[x][y]==player;
+        return stones.get(x, y)==player;
     }
 
     /**
@@ -141,7 +485,215 @@ public class Board {
      * @param y 0-based row (horizontal) index
      */
     public Player playerAt(int x, int y) {
-        return board[x][y];
+        return stones.get(x, y);
+    }
+
+    /**
+     * Return the player who occupies the intersection with the given
+     * index, or null if it is empty.
+     *
+     * @param index index of the intersection, see {@link #index(int, int)}
+     */
+    public Player playerAt(int index) {
+        return stones.get(index);
+    }
+
+    /**
+     * Return the side (0 or 1) of the given player on this board. A player
+     * is given the first free side when it places its first stone. A grid
+     * board holds stones of any number of players; the players beyond the
+     * first two have no side, -1.
+     *
+     * @throws IllegalArgumentException if a bitboard or sparse board already has two other players
+     */
+    int side(Player player) {
+        if (sides[0] == player) return 0;
+        if (sides[1] == player) return 1;
+        if (sides[0] == null) { sides[0] = player; return 0; }
+        if (sides[1] == null) { sides[1] = player; return 1; }
+        if (storage == Storage.GRID) return -1;
+        throw new IllegalArgumentException(player.getName() + " is not one of the two players on this board");
+    }
+
+    /** Return the geometry of this board size. */
+    Geometry geometry() {
+        return geometry;
+    }
+
+    /**
+     * Return the threats of both sides. Once the live grid has been handed
+     * out they are counted afresh on every call, as for {@link #hash()}.
+     */
+    ThreatMap threatMap() {
+        if (!exposed) return threats;
+        ThreatMap threats = new ThreatMap();
+        threats.rebuild(this);
+        return threats;
+    }
+
+    /** Return the side of the player on this board, or -1 if it has no stones here yet. */
+    int knownSide(Player player) {
+        if (player == null) return -1;
+        if (sides[0] == player) return 0;
+        return sides[1] == player ? 1 : -1;
+    }
+
+    /**
+     * Return the number of threats of the given kind the player has. The
+     * threats are kept up to date as stones are placed, by looking at the
+     * four lines through each stone only, so this takes constant time.
+     */
+    public int threats(Player player, Threat threat) {
+        ThreatMap threats = threatMap();
+        int side = knownSide(player);
+        return side < 0 ? 0 : threats.count(side, threat);
+    }
+
+    /**
+     * Return the number of five-points of the player: empty places where
+     * a stone of the player would make five in a row.
+     */
+    public int fivePointCount(Player player) {
+        ThreatMap threats = threatMap();
+        int side = knownSide(player);
+        return side < 0 ? 0 : threats.fivePoints(side).size();
+    }
+
+    /**
+     * Return the index of the i-th five-point of the player.
+     *
+     * @param i 0-based position, less than {@link #fivePointCount(Player)}
+     */
+    public int fivePoint(Player player, int i) {
+        ThreatMap threats = threatMap();
+        int side = knownSide(player);
+        if (side < 0) throw new IndexOutOfBoundsException("Index " + i + " out of bounds for size 0");
+        return threats.fivePoints(side).get(i);
+    }
+
+    /** Return whether a stone of the player at the place with the given index would make five. */
+    public boolean isFivePoint(Player player, int index) {
+        ThreatMap threats = threatMap();
+        int side = knownSide(player);
+        return side >= 0 && threats.fivePoints(side).contains(index);
+    }
+
+    /**
+     * Return the number of four-points of the player: empty places where
+     * a stone of the player would make a four, that is a new five-point.
+     */
+    public int fourPointCount(Player player) {
+        ThreatMap threats = threatMap();
+        int side = knownSide(player);
+        return side < 0 ? 0 : threats.fourPoints(side).size();
+    }
+
+    /**
+     * Return the index of the i-th four-point of the player.
+     *
+     * @param i 0-based position, less than {@link #fourPointCount(Player)}
+     */
+    public int fourPoint(Player player, int i) {
+        ThreatMap threats = threatMap();
+        int side = knownSide(player);
+        if (side < 0) throw new IndexOutOfBoundsException("Index " + i + " out of bounds for size 0");
+        return threats.fourPoints(side).get(i);
+    }
+
+    /**
+     * Return the Zobrist hash of the stones on this board. Boards of the
+     * same size holding the same stones for the same sides have the same
+     * hash, however the stones got there. Side 0 is the player who placed
+     * the first stone; a stone of a third player hashes as both sides.
+     */
+    public long hash() {
+        if (!exposed) return hash;
+
+        long hash = 0;
+        for (int x = 0; x < size; x++) {
+            for (int y = 0; y < size; y++) {
+                Player player = at(x, y);
+                if (player == null) continue;
+                int side = side(player);
+                hash ^= side >= 0 ? geometry.key(x * size + y, side)
+                        : geometry.key(x * size + y, 0) ^ geometry.key(x * size + y, 1);
+            }
+        }
+        return hash;
+    }
+
+    /** Return the stone at (x, y) for the scans below. */
+    private Player at(int x, int y) {
+        return stones.get(x, y);
+    }
+
+    /**
+     * Return the number of stones of the player that follow (x, y) in the
+     * direction (dx, dy), looking no further than the given limit.
+     */
+    private int run(int x, int y, int dx, int dy, Player player, int limit) {
+        int count = 0;
+        for (x += dx, y += dy; count < limit && x >= 0 && y >= 0 && x < size && y < size; x += dx, y += dy) {
+            if (at(x, y) != player) break;
+            count++;
+        }
+        return count;
+    }
+
+    /**
+     * Count the runs of five through the stone just placed at (x, y),
+     * only looking along the four lines through it. The first run found
+     * becomes the winning row.
+     */
+    private void recordFives(int x, int y, int side) {
+        Player player = sides[side];
+        for (int[] d : Geometry.DIRECTIONS) {
+            int back = run(x, y, -d[0], -d[1], player, 4);
+            int ahead = run(x, y, d[0], d[1], player, 4);
+            if (back + ahead < 4) continue;
+
+            fives[side] += back + ahead - 3;
+            if (winningCells == null) {
+                List<Place> row = new ArrayList<>(5);
+                for (int k = -back; k < 5 - back; k++) {
+                    row.add(geometry.place(x + k * d[0], y + k * d[1]));
+                }
+                winningCells = List.copyOf(row);
+            }
+        }
+    }
+
+    /** Uncount the runs of five through the stone about to be removed from (x, y). */
+    private void forgetFives(int x, int y, Player player) {
+        for (int[] d : Geometry.DIRECTIONS) {
+            int back = run(x, y, -d[0], -d[1], player, 4);
+            int ahead = run(x, y, d[0], d[1], player, 4);
+            if (back + ahead >= 4) fives[side(player)] -= back + ahead - 3;
+        }
+        if (winningCells != null) {
+            for (Place place : winningCells) {
+                if (place.x == x && place.y == y) {
+                    winningCells = null;
+                    break;
+                }
+            }
+        }
+    }
+
+    /**
+     * Return the player who has a winning row on the board, or null if
+     * nobody has won yet.
+     */
+    public Player winner() {
+        if (exposed) {
+            Iterator<Place> row = winningRow().iterator();
+            if (!row.hasNext()) return null;
+            Place place = row.next();
+            return at(place.x, place.y);
+        }
+        if (fives[0] > 0) return sides[0];
+        if (fives[1] > 0) return sides[1];
+        return null;
     }
 
     /**
@@ -151,93 +703,133 @@ public class Board {
      * a horizontal, vertical, or diagonal direction.
      */
     public boolean isWonBy(Player player) {
-        List<Place> winner = nInARow(5,player);
-        if(!winner.isEmpty()) {
-            Place place = winner.get(0);
-            return player == board[place.x][place.y];
+        if (!exposed) {
+            if (player == null) return false;
+            if (player == sides[0]) return fives[0] > 0;
+            return player == sides[1] && fives[1] > 0;
         }
-        return false;
+        return player != null && !nInARow(5,player).isEmpty();
     }
 
     /** Return the winning row. For those who are not familiar with
      * the Iterable interface, you may return an object of
      * List<Place>. */
     public Iterable<Place> winningRow() {
-        // Create list of winning position
-        List<Place> winningRow = new LinkedList<>();
-
-        // Check rows
-        for (int row = 0; row < size; row++) {
-            for (int col = 0; col <= size - 5; col++) {
-                Player player = board[row][col];
-                if (player != null &&
-                        player == board[row][col + 1] &&
-                        player == board[row][col + 2] &&
-                        player == board[row][col + 3] &&
-                        player == board[row][col + 4]) {
-                    winningRow.add(new Place(row,col));
-                    winningRow.add(new Place(row,col+1));
-                    winningRow.add(new Place(row,col+2));
-                    winningRow.add(new Place(row,col+3));
-                    winningRow.add(new Place(row,col+4));
-                    return winningRow;
+        if (exposed) return scanWinningRow();
+        if (winningCells == null && (fives[0] > 0 || fives[1] > 0)) {
+            winningCells = List.copyOf(scanWinningRow());
+        }
+        return winningCells == null ? List.of() : winningCells;
+    }
+
+    /** Find the first winning row by scanning the whole board. */
+    private List<Place> scanWinningRow() {
+        if (stones instanceof BitboardStones bitboard) {
+            long first = Long.MAX_VALUE;
+            for (int side = 0; side < 2; side++) first = Math.min(first, bitboard.firstRun(5, side, geometry.lines()));
+            return first == Long.MAX_VALUE ? new LinkedList<>() : runPlaces(first, 5);
+        }
+        if (fewStones()) {
+            long first = Math.min(firstRun(5, sides[0]), firstRun(5, sides[1]));
+            return first == Long.MAX_VALUE ? new LinkedList<>() : runPlaces(first, 5);
+        }
+
+        Geometry.Lines lines = geometry.lines();
+        for (int d = 0; d < Geometry.DIRECTIONS.length; d++) {
+            int step = lines.step[d];
+            for (int line = lines.first[d]; line < lines.first[d + 1]; line++) {
+                Player previous = null;
+                int count = 0;
+                for (int k = 0, i = lines.start[line]; k < lines.length[line]; k++, i += step) {
+                    Player player = playerAt(i);
+                    count = player == null ? 0 : player == previous ? count + 1 : 1;
+                    previous = player;
+                    if (count == 5) return placesBefore(i, step, 5);
                 }
             }
         }
 
-        // Check columns
-        for (int col = 0; col < size; col++) {
-            for (int row = 0; row <= size - 5; row++) {
-                Player player = board[row][col];
-                if (player != null &&
-                        player == board[row + 1][col] &&
-                        player == board[row + 2][col] &&
-                        player == board[row + 3][col]
-                        && player == board[row + 4][col]) {
-                    winningRow.add(new Place(row,col));
-                    winningRow.add(new Place(row+1,col));
-                    winningRow.add(new Place(row+2,col));
-                    winningRow.add(new Place(row+3,col));
-                    winningRow.add(new Place(row+4,col));
-                    return winningRow;
-                }
+        // No winner
+        return new LinkedList<>();
+    }
+
+    /**
+     * Whether the board knows all its stones and they are few enough that
+     * the scans below are cheaper from the stones than over every line.
+     * They always are on a sparse board. Both ways find the same places.
+     */
+    private boolean fewStones() {
+        if (exposed) return false;
+        return storage == Storage.SPARSE || (long) occupied.size() * 8 < (long) size * size;
+    }
+
+    /**
+     * Return where the stones are along the lines of the board: one entry
+     * per stone and direction, holding the line through the stone in its
+     * high half and the offset of the stone along that line in its low
+     * half, sorted, so in the order in which a scan over the lines meets
+     * them. Returns null if the board does not know all its stones, after
+     * the grid has been handed out by {@link #getBoard()}.
+     */
+    long[] lineStones() {
+        if (exposed) return null;
+        Geometry.Lines lines = geometry.lines();
+        long[] lineStones = new long[Geometry.DIRECTIONS.length * occupied.size()];
+        int count = 0;
+        for (int s = 0; s < occupied.size(); s++) {
+            int index = occupied.get(s);
+            for (int d = 0; d < Geometry.DIRECTIONS.length; d++) {
+                lineStones[count++] = (long) lines.line(d, index) << 32 | lines.offset(d, index);
             }
         }
+        Arrays.sort(lineStones);
+        return lineStones;
+    }
 
-        // Check diagonals
-        for (int row = 0; row <= size - 5; row++) {
-            for (int col = 0; col <= size - 5; col++) {
-                Player player = board[row][col];
-                if (player != null &&
-                        player == board[row + 1][col + 1] &&
-                        player == board[row + 2][col + 2] &&
-                        player == board[row + 3][col + 3] &&
-                        player == board[row + 4][col + 4]) {
-                    winningRow.add(new Place(row,col));
-                    winningRow.add(new Place(row+1,col+1));
-                    winningRow.add(new Place(row+2,col+2));
-                    winningRow.add(new Place(row+3,col+3));
-                    winningRow.add(new Place(row+4,col+4));
-                    return winningRow;
-                }
-                player = board[row + 4][col];
-                if (player != null &&
-                        player == board[row + 3][col + 1] &&
-                        player == board[row + 2][col + 2] &&
-                        player == board[row + 1][col + 3] &&
-                        player == board[row][col + 4]) {
-                    winningRow.add(new Place(row+4,col));
-                    winningRow.add(new Place(row+3,col+1));
-                    winningRow.add(new Place(row+2,col+2));
-                    winningRow.add(new Place(row+1,col+3));
-                    winningRow.add(new Place(row,col+4));
-                    return winningRow;
+    /**
+     * Find the first run of n stones of the player in the order of a scan
+     * over the lines, starting from the stones of the player instead.
+     *
+     * @return line << 32 | offset of the first stone of the run, or
+     *         Long.MAX_VALUE if there is none
+     */
+    private long firstRun(int n, Player player) {
+        Geometry.Lines lines = geometry.lines();
+        long first = Long.MAX_VALUE;
+        for (int s = 0; s < occupied.size(); s++) {
+            int index = occupied.get(s);
+            if (player == null || playerAt(index) != player) continue;
+            for (int d = 0; d < Geometry.DIRECTIONS.length; d++) {
+                int step = lines.step[d];
+                int line = lines.line(d, index), offset = lines.offset(d, index);
+                // Only count from the first stone of a run
+                if (offset > 0 && playerAt(index - step) == player) continue;
+
+                int count = 1;
+                while (count < n && offset + count < lines.length[line] && playerAt(index + count * step) == player) {
+                    count++;
                 }
+                if (count == n) first = Math.min(first, (long) line << 32 | offset);
             }
         }
+        return first;
+    }
 
-        // No winner
-        return winningRow;
+    /** Return the n places of the run found by {@link #firstRun}. */
+    private List<Place> runPlaces(long run, int n) {
+        Geometry.Lines lines = geometry.lines();
+        int line = (int) (run >>> 32);
+        int step = lines.step[lines.direction(line)];
+        return placesBefore(lines.start[line] + ((int) run + n - 1) * step, step, n);
+    }
+
+    /** Return the n places along a line that end at the given index, first one first. */
+    private List<Place> placesBefore(int index, int step, int n) {
+        List<Place> places = new LinkedList<>();
+        for (int i = index - (n - 1) * step; places.size() < n; i += step) {
+            places.add(geometry.place(i));
+        }
+        return places;
     }
 
     /**
@@ -253,102 +845,29 @@ public class Board {
      * @see Place
      */
     public List<Place> nInARow(int numberOfStones, Player player) {
-        List<Place> nInARow = new LinkedList<>();
-
-        // Special Case 1 stone in a row
-        if(numberOfStones == 1) {
-            for(int row=0; row<size; row++) {
-                for(int col=0; col<size; col++) {
-                    if(player== board[row][col]) {
-                        nInARow.add(new Place(row,col));
-                        return nInARow;
-                    }
-                }
-            }
+        if (numberOfStones <= 0) return new LinkedList<>();
+        if (player != null && stones instanceof BitboardStones bitboard) {
+            int side = knownSide(player);
+            long first = side < 0 ? Long.MAX_VALUE : bitboard.firstRun(numberOfStones, side, geometry.lines());
+            return first == Long.MAX_VALUE ? new LinkedList<>() : runPlaces(first, numberOfStones);
         }
-
-        // Check rows
-        for(int row = 0; row<size; row++) {
-            for(int col = 0; col<=size-numberOfStones; col++) {
-                nInARow.add(new Place(row,col));
-                for (int i = col; i < col + numberOfStones - 1; i++) { // O(1)
-                    try {
-                        if (board[row][i] != board[row][i + 1] || board[row][i] != player) {
-                            nInARow.clear();
-                            break;
-                        } else {
-                            nInARow.add(new Place(row, i+1));
-                        }
-                    } catch (ArrayIndexOutOfBoundsException e) {
-                        nInARow.clear();
-                        break;
-                    }
-                }
-                if (nInARow.size() == numberOfStones) return nInARow;
-            }
+        if (player != null && fewStones()) {
+            long first = firstRun(numberOfStones, player);
+            return first == Long.MAX_VALUE ? new LinkedList<>() : runPlaces(first, numberOfStones);
         }
 
-        // Check columns
-        for(int col = 0; col<size; col++) {
-            for(int row = 0; row<=size-numberOfStones; row++) {
-                nInARow.add(new Place(row, col));
-                for (int i = row; i < row + numberOfStones - 1; i++) { // O(1)
-                    try {
-                        if (board[i][col] != board[i+1][col] ||
-                                board[i][col] != player) {
-                            nInARow.clear();
-                            break;
-                        } else {
-                            nInARow.add(new Place(i+1, col));
-                        }
-                    } catch (ArrayIndexOutOfBoundsException e) {
-                        nInARow.clear();
-                        break;
-                    }
+        Geometry.Lines lines = geometry.lines();
+        for (int d = 0; d < Geometry.DIRECTIONS.length; d++) {
+            int step = lines.step[d];
+            for (int line = lines.first[d]; line < lines.first[d + 1]; line++) {
+                int count = 0;
+                for (int k = 0, i = lines.start[line]; k < lines.length[line]; k++, i += step) {
+                    count = playerAt(i) == player ? count + 1 : 0;
+                    if (count == numberOfStones) return placesBefore(i, step, numberOfStones);
                 }
-                if (nInARow.size() == numberOfStones) return nInARow;
             }
         }
-
-        // Check diagonals
-        for(int row = 0; row<=size-numberOfStones; row++) {
-            for(int col = 0; col<=size-numberOfStones; col++) {
-                nInARow.add(new Place(row+numberOfStones-1, col));
-                for (int j=row,i=col; i<col+numberOfStones-1; j--,i++) { // O(1)
-                    try {
-                        if (board[j+numberOfStones-1][i] != board[j+numberOfStones-2][i+1] ||
-                                board[j+numberOfStones-1][i] != player) {
-                            nInARow.clear();
-                            break;
-                        } else {
-                            nInARow.add(new Place(j+3, i+1));
-                        }
-                    } catch (ArrayIndexOutOfBoundsException e) {
-                        nInARow.clear();
-                        break;
-                    }
-                }
-                if (nInARow.size() == numberOfStones) return nInARow;
-                nInARow.add(new Place(row, col));
-                for (int j=row,i=col; i<col+numberOfStones-1; j++,i++) { // O(1)
-                    try {
-                        if (board[j][i] != board[j+1][i+1] ||
-                                board[j][i] != player) {
-                            nInARow.clear();
-                            break;
-                        } else {
-                            nInARow.add(new Place(j+1, i+1));
-                        }
-                    } catch (ArrayIndexOutOfBoundsException e) {
-                        nInARow.clear();
-                        break;
-                    }
-                }
-                if (nInARow.size() == numberOfStones) return nInARow;
-            }
-        }
-
-        return nInARow;
+        return new LinkedList<>();
     }
 
     /**
@@ -364,173 +883,91 @@ public class Board {
      */
     public int[] maxStonesInARow(Player player) {
         int[] maxPositionCount = new int[]{0,0};
-        int consecutiveCount = 0;
-        int openEndsCount = 0;
-        boolean isConsecutive=false;
-
-        // Check rows
-        for(int row = 0; row<size; row++) {
-            for(int col = 0; col<size; col++) {
-                if(board[row][col] == player) {
-                    consecutiveCount++;
-                    isConsecutive=true;
+        int[] run = new int[2];
+        Geometry.Lines lines = geometry.lines();
+
+        if (player != null && fewStones()) {
+            // Only visit the places near stones; see countEmpty
+            long[] lineStones = lineStones();
+            int previous = -1;
+            for (int s = 0; s < lineStones.length; ) {
+                int line = (int) (lineStones[s] >>> 32);
+                if (line > previous + 1) {
+                    // The first place of a line without stones
+                    run[0] = run[1] = 0;
+                    countStone(run, maxPositionCount, null, player);
                 }
-                else if(board[row][col] == null && consecutiveCount > 0 && openEndsCount<2) openEndsCount++;
-                else if(board[row][col] == null) openEndsCount = 1;
-                else if(consecutiveCount > 0) {
-                    consecutiveCount = 0;
-                    openEndsCount = 0;}
-                else openEndsCount = 0;
-
-                if(consecutiveCount+openEndsCount > maxPositionCount[0]+maxPositionCount[1]) {
-                    maxPositionCount[0] = consecutiveCount;
-                    maxPositionCount[1] = openEndsCount;
-                }
-                if(!isConsecutive) consecutiveCount = 0;
-                isConsecutive = false;
-            }
-            consecutiveCount = 0;
-            openEndsCount = 0;
-        }
 
-        // Check columns
-        for(int col = 0; col<size; col++) {
-            for(int row = 0; row<size; row++) {
-                if(board[row][col] == player) {
-                    consecutiveCount++;
-                    isConsecutive=true;
-                }
-                else if(board[row][col] == null && consecutiveCount > 0 && openEndsCount<2) openEndsCount++;
-                else if(board[row][col] == null) openEndsCount = 1;
-                else if(consecutiveCount > 0) {
-                    consecutiveCount = 0;
-                    openEndsCount = 0;}
-                else openEndsCount = 0;
-                if(consecutiveCount+openEndsCount > maxPositionCount[0]+maxPositionCount[1]) {
-                    maxPositionCount[0] = consecutiveCount;
-                    maxPositionCount[1] = openEndsCount;
+                int step = lines.step[lines.direction(line)];
+                int offset = 0;
+                run[0] = run[1] = 0;
+                for (; s < lineStones.length && (int) (lineStones[s] >>> 32) == line; s++) {
+                    int next = (int) lineStones[s];
+                    countEmpty(run, maxPositionCount, player, next - offset);
+                    countStone(run, maxPositionCount, playerAt(lines.start[line] + next * step), player);
+                    offset = next + 1;
                 }
-                if(!isConsecutive) consecutiveCount = 0;
-                isConsecutive = false;
+                countEmpty(run, maxPositionCount, player, lines.length[line] - offset);
+                previous = line;
             }
-            consecutiveCount = 0;
-            openEndsCount = 0;
-        }
-
-        // Check diagonal 1 top
-        for (int i = size - 1; i > 0; i--) {
-            for (int j = 0, x = i; x <= size - 1; j++, x++) {
-                if(board[x][j] == player) {
-                    consecutiveCount++;
-                    isConsecutive=true;
-                }
-                else if(board[x][j] == null && consecutiveCount > 0 && openEndsCount<2) openEndsCount++;
-                else if(board[x][j] == null) openEndsCount = 1;
-                else if(consecutiveCount > 0) {
-                    consecutiveCount = 0;
-                    openEndsCount = 0;}
-                else openEndsCount = 0;
-                if(consecutiveCount+openEndsCount > maxPositionCount[0]+maxPositionCount[1]) {
-                    maxPositionCount[0] = consecutiveCount;
-                    maxPositionCount[1] = openEndsCount;
-                }
-                if(!isConsecutive) consecutiveCount = 0;
-                isConsecutive = false;
+            if (lines.first[Geometry.DIRECTIONS.length] > previous + 1) {
+                run[0] = run[1] = 0;
+                countStone(run, maxPositionCount, null, player);
             }
-            consecutiveCount = 0;
-            openEndsCount = 0;
+            return maxPositionCount;
         }
 
-        // check diagonal 1 bottom
-        for (int i = 0; i <= size - 1; i++) {
-            for (int j = 0, y = i; y <= size - 1; j++, y++) {
-                if(board[j][y] == player) {
-                    consecutiveCount++;
-                    isConsecutive=true;
+        for (int d = 0; d < Geometry.DIRECTIONS.length; d++) {
+            int step = lines.step[d];
+            for (int line = lines.first[d]; line < lines.first[d + 1]; line++) {
+                run[0] = run[1] = 0;
+                for (int k = 0, i = lines.start[line]; k < lines.length[line]; k++, i += step) {
+                    countStone(run, maxPositionCount, playerAt(i), player);
                 }
-                else if(board[j][y] == null && consecutiveCount > 0 && openEndsCount<2) openEndsCount++;
-                else if(board[j][y] == null) openEndsCount = 1;
-                else if(consecutiveCount > 0) {
-                    consecutiveCount = 0;
-                    openEndsCount = 0;}
-                else openEndsCount = 0;
-                if(consecutiveCount+openEndsCount > maxPositionCount[0]+maxPositionCount[1]) {
-                    maxPositionCount[0] = consecutiveCount;
-                    maxPositionCount[1] = openEndsCount;
-                }
-                if(!isConsecutive) consecutiveCount = 0;
-                isConsecutive = false;
             }
-            consecutiveCount = 0;
-            openEndsCount = 0;
         }
 
-        // check diagonal 2 top half
-        for( int k = 0 ; k < size ; k++ ) {
-            for( int j = 0 ; j <= k ; j++ ) {
-                int i = k - j;
-                if(board[i][j] == player) {
-                    consecutiveCount++;
-                    isConsecutive=true;
-                }
-                else if(board[i][j] == null && consecutiveCount > 0 && openEndsCount<2) openEndsCount++;
-                else if(board[i][j] == null) openEndsCount = 1;
-                else if(consecutiveCount > 0) {
-                    consecutiveCount = 0;
-                    openEndsCount = 0;}
-                else openEndsCount = 0;
-                if(consecutiveCount+openEndsCount > maxPositionCount[0]+maxPositionCount[1]) {
-                    maxPositionCount[0] = consecutiveCount;
-                    maxPositionCount[1] = openEndsCount;
-                }
-                if(!isConsecutive) consecutiveCount = 0;
-                isConsecutive = false;
-            }
-            consecutiveCount = 0;
-            openEndsCount = 0;
-        }
+        return maxPositionCount;
+    }
 
-        // check diagonal 2 bottom half
-        for( int k = size - 2 ; k >= 0 ; k-- ) {
-            for( int j = 0 ; j <= k ; j++ ) {
-                int i = k - j;
-                if(board[size-j-1][size-i-1] == player) {
-                    consecutiveCount++;
-                    isConsecutive=true;
-                }
-                else if(board[size-j-1][size-i-1] == null && consecutiveCount > 0 && openEndsCount<2) openEndsCount++;
-                else if(board[size-j-1][size-i-1] == null) openEndsCount = 1;
-                else if(consecutiveCount > 0) {
-                    consecutiveCount = 0;
-                    openEndsCount = 0;}
-                else openEndsCount = 0;
-                if(consecutiveCount+openEndsCount > maxPositionCount[0]+maxPositionCount[1]) {
-                    maxPositionCount[0] = consecutiveCount;
-                    maxPositionCount[1] = openEndsCount;
-                }
-                if(!isConsecutive) consecutiveCount = 0;
-                isConsecutive = false;
-            }
-            consecutiveCount = 0;
-            openEndsCount = 0;
+    /**
+     * Count one more place along a line for {@link #maxStonesInARow}.
+     *
+     * @param run   stones in a row and open ends of the current run
+     * @param max   the run with the most stones and open ends so far
+     * @param stone the stone at the place, or null if it is empty
+     */
+    private static void countStone(int[] run, int[] max, Player stone, Player player) {
+        if (stone == player) run[0]++;
+        else if (stone == null && run[0] > 0 && run[1] < 2) run[1]++;
+        else if (stone == null) run[1] = 1;
+        else run[1] = 0;
+
+        if (run[0] + run[1] > max[0] + max[1]) {
+            max[0] = run[0];
+            max[1] = run[1];
         }
+        if (stone != player) run[0] = 0;
+    }
 
-        return maxPositionCount;
+    /**
+     * Count n empty places along a line. After two of them the run is
+     * always one open end and no stones, which cannot improve on the
+     * maximum any more, so the rest are skipped.
+     */
+    private static void countEmpty(int[] run, int[] max, Player player, int n) {
+        for (int k = 0; k < Math.min(n, 2); k++) {
+            countStone(run, max, null, player);
+        }
     }
 
     /**
-     * Get a deep copy of the Tic Tac Toe board.
+     * Get a deep copy of the Tic Tac Toe board. The copy is a
+     * {@link #snapshot()}, so it is only copied when first written.
      * @return      an identical copy of the board
      */
     public Board getDeepCopy () {
-        Board newBoard = new Board(size);
-
-        for(int row = 0; row < newBoard.size(); row++) {
-            if (newBoard.size() >= 0) System.arraycopy(this.board[row], 0, newBoard.board[row], 0, newBoard.size());
-        }
-        newBoard.occupiedPositions = this.occupiedPositions;
-
-        return newBoard;
+        return snapshot();
     }
 
     /**
@@ -568,8 +1005,9 @@ public class Board {
 
         @Override
         public int hashCode() {
+            // 16 bits keep the hash distinct on every board that fits in memory
             int result = x;
-            result = result << 8 | y;
+            result = result << 16 ^ y;
             return result;
         }
     }
@@ -1,15 +1,153 @@
 package omok;
 
 import java.awt.*;
+import java.time.Duration;
 import java.util.*;
 import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.Consumer;
 
 public class Computer extends Player {
+    /** Ways the computer can pick its moves. */
+    public enum Engine {
+        /** Minimax with alpha-beta pruning, deepened one ply at a time. */
+        MINIMAX,
+        /** Monte Carlo tree search, which grows a tree of random playouts. */
+        MONTE_CARLO
+    }
+
+    /** Entries of the transposition table unless set otherwise; 4 MB. */
+    public static final int DEFAULT_TABLE_SIZE = 1 << 18;
+
+    /** Stones the threat search may place looking for a forced win, unless set otherwise. */
+    public static final int DEFAULT_THREAT_BUDGET = 5000;
+
+    /** Stones the proof-number search may place in a sharp position, unless set otherwise. */
+    public static final int DEFAULT_PROOF_BUDGET = 5000;
+
+    /** Nodes in the table of the proof-number search; 1 MB. */
+    private static final int PROOF_TABLE_SIZE = 1 << 16;
+
+    /** Fours and threes of both players from which a position counts as sharp. */
+    private static final int SHARP_THREATS = 3;
+
+    /** Playouts of the Monte Carlo search per ply of the depth the computer was made with, when untimed. */
+    private static final int PLAYOUTS_PER_PLY = 1000;
+
+    /** Keys for what the hash of a board leaves out: who is to move, and whose stones are side 0. */
+    private static final long MAXIMIZING = 0x6a09e667f3bcc909L, PERSPECTIVE = 0xbb67ae8584caa73bL;
+
+    /**
+     * Half the width of the aspiration window around the score expected at
+     * the root; it grows fourfold each time the score falls outside.
+     */
+    private static final float ASPIRATION = 2500f;
+
+    /**
+     * Nodes of a thread between readings of the clock; a power of two. A
+     * node orders and scores its moves, which takes some tens of
+     * microseconds, so this many still stop within a few milliseconds of
+     * the deadline.
+     */
+    private static final int CLOCK_INTERVAL = 64;
+
+    /**
+     * Counts of one thread's part of the search under way, for
+     * {@link SearchStats}. Each thread, helper and task in the pool counts
+     * into its own, so that they share no cache line; the report adds
+     * them up once they are done.
+     */
+    private static final class Counters {
+        long nodes, evaluations, cutoffs, firstMoveCutoffs, tableProbes, tableHits;
+
+        void add(Counters other) {
+            nodes += other.nodes;
+            evaluations += other.evaluations;
+            cutoffs += other.cutoffs;
+            firstMoveCutoffs += other.firstMoveCutoffs;
+            tableProbes += other.tableProbes;
+            tableHits += other.tableHits;
+        }
+    }
+
+    /** Thrown through the search when the time for a move is up; it carries no stack trace. */
+    private static final class OutOfTime extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        OutOfTime() {
+            super(null, null, false, false);
+        }
+    }
+
     private Player opponent;
     private final int maxDepth;
     private final Random random = new Random();
     private final HashMap<String, Float> scoreFromPosition = new HashMap<>();
 
+    /**
+     * Scores of the windows of five and six places, indexed by the code of
+     * a window: its places read as the base-3 digits 0 (empty), 1 (this
+     * computer) and 2 (the opponent), first place first. Compiled from
+     * scoreFromPosition, which stays the list of patterns to edit.
+     */
+    private final int[] fiveScores = new int[243], sixScores = new int[729];
+    private TranspositionTable table = new TranspositionTable(DEFAULT_TABLE_SIZE);
+    private final MoveOrder order = new MoveOrder();
+    private Engine engine = Engine.MINIMAX;
+    private int threatBudget = DEFAULT_THREAT_BUDGET;
+    private int proofBudget = DEFAULT_PROOF_BUDGET;
+
+    /** Proof-number search, made when first needed. */
+    private ProofNumberSearch prover;
+
+    /** Book of opening replies played without a search, or null. */
+    private OpeningBook book;
+
+    /** Pool searching the moves at the root at once, or null to search them one by one. */
+    private ForkJoinPool pool;
+
+    /** Number of helper threads searching alongside each search. */
+    private int helperThreads;
+
+    /** Score of the move picked at the root by the last iteration. */
+    private float rootScore;
+
+    /** When the search under way has to stop, as a System.nanoTime() value. */
+    private long deadline;
+
+    /** Set once the main search is done, to stop its helper threads. */
+    private volatile boolean helpersStopped;
+
+    /** Set to stop the search under way, and its helpers, from another thread. */
+    private volatile boolean cancelled;
+
+    /** Counters of the threads and tasks that searched for the current move. */
+    private final Queue<Counters> counters = new ConcurrentLinkedQueue<>();
+
+    /** Statistics of the last move, or null before the first. */
+    private volatile SearchStats lastStats;
+
+    /** Called with the statistics of each move, or null. */
+    private Consumer<SearchStats> statsListener;
+
+    /** Handle of the search started by startMove that is under way, or null. */
+    private volatile SearchHandle running;
+
+    /** Deepest iteration the last search completed. */
+    private int completedDepth;
+
+    /** Whether to search on the opponent's time, see {@link #ponder(Board)}. */
+    private boolean pondering;
+
+    /** Thread searching the position after the predicted reply, or null. */
+    private Thread ponderer;
+
+    /** Hash of the position the ponderer searched, the depth it completed there and its best move. */
+    private long ponderHash;
+    private int ponderDepth, ponderMove;
+
     /**
      * Constructor
      */
@@ -17,12 +155,14 @@ public class Computer extends Player {
         super(name,playerPiece);
         this.maxDepth = maxDepth;
         initScoreFromPosition();
+        compilePatterns();
     }
 
     public Computer(String name, Color color, int maxDepth) {
         super(name, color);
         this.maxDepth = maxDepth;
         initScoreFromPosition();
+        compilePatterns();
     }
 
     private void initScoreFromPosition() {
@@ -59,10 +199,322 @@ public class Computer extends Player {
         scoreFromPosition.put("00220",   -500f);
     }
 
+    /** Fill the window tables from scoreFromPosition; patterns of other lengths are not used. */
+    private void compilePatterns() {
+        for (Map.Entry<String, Float> pattern : scoreFromPosition.entrySet()) {
+            String places = pattern.getKey();
+            int code = 0;
+            for (int i = 0; i < places.length(); i++) {
+                code = code * 3 + places.charAt(i) - '0';
+            }
+            if (places.length() == 5) fiveScores[code] += pattern.getValue().intValue();
+            if (places.length() == 6) sixScores[code] += pattern.getValue().intValue();
+        }
+    }
+
     public void setOpponent(Player opponent) {
         this.opponent = opponent;
     }
 
+    /**
+     * Set the number of entries of the transposition table, which keeps
+     * the results of positions already searched; the table takes 16 bytes
+     * per entry. The size is rounded down to a power of two, and the
+     * results kept so far are dropped.
+     */
+    public void setTableSize(int entries) {
+        table = new TranspositionTable(entries);
+    }
+
+    /**
+     * Search the moves at the root in the given pool, each on its own
+     * snapshot of the board, or one by one on the calling thread if the
+     * pool is null. The move played does not depend on the pool: seeded
+     * with {@link #setSeed}, the computer plays the same moves either way.
+     */
+    public void setPool(ForkJoinPool pool) {
+        this.pool = pool;
+    }
+
+    /**
+     * Run the given number of helper threads alongside each search (Lazy
+     * SMP). The helpers search the same position, half of them one ply
+     * deeper than the main search, each trying the moves at the root in
+     * its own order. They only talk to the main search through the
+     * shared transposition table, where they leave results it would
+     * otherwise have to search for. The move is still the one the main
+     * search picks, but with helpers it depends on their timing, even
+     * when seeded.
+     *
+     * @param helpers number of helper threads; 0, the default, for none
+     * @throws IllegalArgumentException if helpers is negative
+     */
+    public void setHelperThreads(int helpers) {
+        if (helpers < 0) {
+            throw new IllegalArgumentException("Negative number of helper threads: " + helpers);
+        }
+        this.helperThreads = helpers;
+    }
+
+    /**
+     * Set how the computer picks its moves; minimax unless set otherwise.
+     * Either engine plays book moves and forced wins found by the threat
+     * and proof-number searches first. The Monte Carlo search runs on
+     * the helper threads as well, see {@link #setHelperThreads(int)}.
+     */
+    public void setEngine(Engine engine) {
+        this.engine = Objects.requireNonNull(engine);
+    }
+
+    /** Return how the computer picks its moves. */
+    public Engine getEngine() {
+        return engine;
+    }
+
+    /**
+     * Return what the search for the last move did, or null if the
+     * computer has not moved yet.
+     */
+    public SearchStats getLastStats() {
+        return lastStats;
+    }
+
+    /**
+     * Call the given listener with the statistics of every move, on the
+     * thread that searched for it, for instance to log them; null for none.
+     */
+    public void setStatsListener(Consumer<SearchStats> listener) {
+        this.statsListener = listener;
+    }
+
+    /** Keep the statistics of the move just made, which took from start until now. */
+    private void report(long start) {
+        Counters total = new Counters();
+        for (Counters part : counters) total.add(part);
+        SearchStats stats = new SearchStats(completedDepth, total.nodes, total.evaluations, total.cutoffs,
+                total.firstMoveCutoffs, total.tableProbes, total.tableHits, System.nanoTime() - start);
+        lastStats = stats;
+        Consumer<SearchStats> listener = statsListener;
+        if (listener != null) listener.accept(stats);
+    }
+
+    /** Return new counters for a thread or task searching for the current move. */
+    private Counters newCounters() {
+        Counters part = new Counters();
+        counters.add(part);
+        return part;
+    }
+
+    /**
+     * Turn searching on the opponent's time on or off; it is off unless
+     * set. Turning it off stops any search under way.
+     */
+    public void setPondering(boolean pondering) {
+        this.pondering = pondering;
+        if (!pondering) stopPondering();
+    }
+
+    /**
+     * Search on the opponent's time: after the computer has moved on the
+     * board, predict the opponent's reply and search the position after
+     * it on a thread of its own until the computer is to move again. The
+     * search fills the transposition table. If the opponent makes the
+     * predicted reply, the next move finds its results there, and an
+     * untimed move that the ponder search already searched to the full
+     * depth is played at once. Any other reply simply leaves the results
+     * unused.
+     * <p>
+     * Only the minimax engine ponders, and only while pondering is on.
+     * The next makeMove stops the search, and so does stopPondering.
+     *
+     * @param board the board after the computer's move, the opponent to
+     *              move; later changes to it are not seen by the search
+     */
+    public void ponder(Board board) {
+        stopPondering();
+        ponderDepth = 0;
+        if (!pondering || engine != Engine.MINIMAX || opponent == null || running != null) return;
+        if (board.winner() != null || board.isFull()) return;
+        int reply = predictReply(board);
+        if (reply < 0) return;
+
+        Board position = board.snapshot();
+        position.makeMove(reply, opponent);
+        if (position.winner() != null || position.isFull()) return;
+        ponderHash = position.hash();
+        ponderer = new Thread(() -> {
+            int[] move = search(position, TranspositionTable.MAX_DEPTH, System.nanoTime() + Long.MAX_VALUE / 2);
+            ponderMove = position.index(move[0], move[1]);
+            ponderDepth = completedDepth;
+        }, getName() + " ponderer");
+        ponderer.setDaemon(true);
+        ponderer.start();
+    }
+
+    /**
+     * Stop searching on the opponent's time, and wait for the search to
+     * end. What it found is kept for the next move.
+     */
+    public void stopPondering() {
+        Thread ponderer = this.ponderer;
+        if (ponderer == null) return;
+        cancelled = true;
+        join(ponderer);
+        cancelled = false;
+        this.ponderer = null;
+    }
+
+    /** Wait for the thread to end; an interrupt meanwhile is kept for the caller. */
+    private static void join(Thread thread) {
+        boolean interrupted = false;
+        while (thread.isAlive()) {
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) Thread.currentThread().interrupt();
+    }
+
+    /** Return the reply the opponent is expected to make: the best one stored, or else the first in move order; or -1. */
+    private int predictReply(Board board) {
+        int stored = TranspositionTable.move(table.probe(key(board, false)));
+        if (stored >= 0 && board.isEmpty(stored)) return stored;
+        int[] moves = getAdjacentIndexes(board);
+        return moves.length == 0 ? -1 : order.order(board, moves, -1, opponent, this)[0];
+    }
+
+    /**
+     * Stop pondering, and return the move the ponder search found if it
+     * searched this very position to at least the given depth; or -1.
+     */
+    private int ponderResult(Board board, int depth) {
+        stopPondering();
+        int move = ponderDepth >= depth && ponderHash == board.hash() ? ponderMove : -1;
+        ponderDepth = 0;
+        return move;
+    }
+
+    /**
+     * Set how many stones the threat search may place, each for fours
+     * alone (VCF) and for fours and threes (VCT), before every move. A
+     * forced win it finds is played without searching any further; 0
+     * turns it off. A timed move also stops it after a quarter of its
+     * time.
+     *
+     * @throws IllegalArgumentException if budget is negative
+     */
+    public void setThreatBudget(int budget) {
+        if (budget < 0) {
+            throw new IllegalArgumentException("Negative threat budget: " + budget);
+        }
+        this.threatBudget = budget;
+    }
+
+    /**
+     * Set how many stones the proof-number search may place before a move
+     * in a sharp position, one with several fours and threes on the board.
+     * A win it proves is played without searching any further; 0 turns it
+     * off. A timed move also stops it after a quarter of its time, less
+     * whatever the threat search took.
+     *
+     * @throws IllegalArgumentException if budget is negative
+     */
+    public void setProofBudget(int budget) {
+        if (budget < 0) {
+            throw new IllegalArgumentException("Negative proof budget: " + budget);
+        }
+        this.proofBudget = budget;
+        this.prover = null;
+    }
+
+    /**
+     * Play the replies of the given book in the positions it holds,
+     * before any search; null plays without a book.
+     */
+    public void setOpeningBook(OpeningBook book) {
+        this.book = book;
+    }
+
+    /** Seed the choice between moves that score the same, to replay a game. */
+    public void setSeed(long seed) {
+        random.setSeed(seed);
+    }
+
+    /**
+     * Start searching for a move, as {@link #makeMove(Board)} does, on a
+     * thread of its own. The handle returned gives the best move so far,
+     * stops or cancels the search and completes with the move. The
+     * computer searches for one move at a time.
+     *
+     * @param board the board to play on; later changes to it are not seen
+     *              by the search
+     * @throws IllegalStateException if a search started earlier is still under way
+     */
+    public SearchHandle startMove(Board board) {
+        return start(board, null);
+    }
+
+    /**
+     * Start searching for a move within the given time, as
+     * {@link #makeMove(Board, Duration)} does, on a thread of its own.
+     *
+     * @see #startMove(Board)
+     */
+    public SearchHandle startMove(Board board, Duration budget) {
+        return start(board, Objects.requireNonNull(budget));
+    }
+
+    private SearchHandle start(Board board, Duration budget) {
+        SearchHandle previous = running;
+        if (previous != null) {
+            if (!previous.ending) {
+                throw new IllegalStateException("A search is already under way");
+            }
+            join(previous.thread); // stopped or cancelled, and about to end
+        }
+        stopPondering();
+        Board position = board.snapshot();
+        SearchHandle handle = new SearchHandle(this);
+        running = handle;
+        Thread thread = new Thread(() -> {
+            int[] move;
+            try {
+                move = budget == null ? makeMove(position) : makeMove(position, budget);
+            } catch (RuntimeException | Error e) {
+                finish(handle);
+                handle.fail(e);
+                return;
+            }
+            int depth = completedDepth;
+            finish(handle);
+            handle.complete(new Move(move[0], move[1], depth));
+        }, getName() + " search");
+        thread.setDaemon(true);
+        handle.thread = thread;
+        thread.start();
+        return handle;
+    }
+
+    /** Mark the search of the handle as ended, before its future completes. */
+    private void finish(SearchHandle handle) {
+        synchronized (handle) {
+            running = null;
+            cancelled = false;
+        }
+    }
+
+    /** Make the search of the handle end now, with the best move so far, if it is still under way. */
+    void stopSearch(SearchHandle handle) {
+        synchronized (handle) {
+            if (running == handle) {
+                handle.ending = true;
+                cancelled = true;
+            }
+        }
+    }
+
     /**
      * Compute the most optimal move the computer can make based
      * on the current state of the board.
@@ -70,121 +522,540 @@ public class Computer extends Player {
      * @return The row and col position in the board of the optimal move calculated.
      */
     public int[] makeMove(Board board) {
-        if(board.size()>3 && board.getOccupiedPositions().isEmpty()) {
+        long start = System.nanoTime();
+        int[] move = chooseMove(board);
+        report(start);
+        return move;
+    }
+
+    private int[] chooseMove(Board board) {
+        int pondered = ponderResult(board, maxDepth);
+        completedDepth = 0;
+        counters.clear();
+        int booked = bookMove(board);
+        if (booked >= 0) {
+            return new int[] { booked / board.size(), booked % board.size() };
+        }
+        if(board.size()>3 && board.stoneCount() == 0) {
             return new int[]{(board.size()-1)/2, (board.size()-1)/2};
-        } else if(board.size() > 3 && board.getOccupiedPositions().size()<3) {
+        } else if(board.size() > 3 && board.stoneCount()<3) {
             return makeRandomMove(board);
         }
-        float bestMoveInfo = miniMax(board.getDeepCopy(), maxDepth);
-        int row = ((int)bestMoveInfo) / board.size();
-        int col = ((int)bestMoveInfo) % board.size();
-        return new int[] { row, col };
+        int win = findForcedWin(board, System.nanoTime() + Long.MAX_VALUE / 2);
+        if (win >= 0) {
+            return new int[] { win / board.size(), win % board.size() };
+        }
+        if (engine == Engine.MONTE_CARLO) {
+            return monteCarlo(board, (long) PLAYOUTS_PER_PLY * maxDepth, System.nanoTime() + Long.MAX_VALUE / 2);
+        }
+        if (pondered >= 0 && board.isEmpty(pondered)) {
+            completedDepth = maxDepth;
+            return new int[] { pondered / board.size(), pondered % board.size() };
+        }
+        return search(board, maxDepth, System.nanoTime() + Long.MAX_VALUE / 2);
+    }
+
+    /**
+     * Compute the best move the computer can find within the given time.
+     * The search deepens one ply at a time, whatever the depth this
+     * computer was made with, and plays the move of the deepest search
+     * completed when the time is up.
+     *
+     * @param board  the board to play on; it is not changed
+     * @param budget time for the move; the search overruns it by about
+     *               the time to search one position
+     * @return The row and col position in the board of the move found.
+     */
+    public int[] makeMove(Board board, Duration budget) {
+        long start = System.nanoTime();
+        int[] move = chooseMove(board, budget, start);
+        report(start);
+        return move;
+    }
+
+    private int[] chooseMove(Board board, Duration budget, long start) {
+        ponderResult(board, Integer.MAX_VALUE);
+        completedDepth = 0;
+        counters.clear();
+        int booked = bookMove(board);
+        if (booked >= 0) {
+            return new int[] { booked / board.size(), booked % board.size() };
+        }
+        if(board.size()>3 && board.stoneCount() == 0) {
+            return new int[]{(board.size()-1)/2, (board.size()-1)/2};
+        } else if(board.size() > 3 && board.stoneCount()<3) {
+            return makeRandomMove(board);
+        }
+        // Clamped so that the deadline cannot wrap around
+        Duration limit = Duration.ofNanos(Long.MAX_VALUE / 2);
+        long nanos = budget.isNegative() ? 0 : budget.compareTo(limit) > 0 ? limit.toNanos() : budget.toNanos();
+        // A forced win is looked for in the first quarter of the time at most
+        int win = findForcedWin(board, start + nanos / 4);
+        if (win >= 0) {
+            return new int[] { win / board.size(), win % board.size() };
+        }
+        if (engine == Engine.MONTE_CARLO) return monteCarlo(board, Long.MAX_VALUE, start + nanos);
+        return search(board, TranspositionTable.MAX_DEPTH, start + nanos);
+    }
+
+    /**
+     * Pick a move by Monte Carlo tree search on this thread and the helper
+     * threads, until the given number of playouts or the deadline.
+     */
+    private int[] monteCarlo(Board board, long playouts, long deadline) {
+        order.newSearch(board);
+        MonteCarloSearch search = new MonteCarloSearch(order);
+        int move = search.search(board, this, opponent, helperThreads + 1, playouts, deadline, random, () -> cancelled);
+        newCounters().nodes = search.playouts();
+        return new int[] { move / board.size(), move % board.size() };
+    }
+
+    /** Return the reply the opening book has for the position, or -1. */
+    private int bookMove(Board board) {
+        return book == null ? -1 : book.move(board, random);
+    }
+
+    /**
+     * Return the first move of a forced win by fours, or else by fours
+     * and threes, that the threat search finds; or, in a sharp position,
+     * of a win the proof-number search proves; or -1.
+     *
+     * @param deadline a System.nanoTime() value, when the searches give up
+     */
+    private int findForcedWin(Board board, long deadline) {
+        if (board.size() < 5) return -1;
+        if (threatBudget > 0) {
+            ThreatSearch threats = new ThreatSearch(threatBudget, deadline);
+            int win = threats.findVcf(board, this, opponent);
+            if (win < 0) win = threats.findVct(board, this, opponent);
+            if (win >= 0) return win;
+        }
+        if (proofBudget > 0 && isSharp(board)) {
+            if (prover == null) prover = new ProofNumberSearch(proofBudget, PROOF_TABLE_SIZE);
+            return prover.proveWin(board, this, opponent, deadline);
+        }
+        return -1;
+    }
+
+    /** Return whether the players have several fours and threes between them. */
+    private boolean isSharp(Board board) {
+        int threats = 0;
+        for (Player player : new Player[] {this, opponent}) {
+            threats += board.fourPointCount(player)
+                    + board.threats(player, Board.Threat.OPEN_THREE)
+                    + board.threats(player, Board.Threat.SPLIT_THREE);
+        }
+        return threats >= SHARP_THREATS;
+    }
+
+    /**
+     * Search a copy of the board with iterative deepening: depth 1, 2, ...
+     * up to {@code depthLimit}, or until the deadline or the search is
+     * cancelled. Each iteration leaves
+     * its best moves in the transposition table, which the next one tries
+     * first. The move of an iteration cut short is not played.
+     */
+    private int[] search(Board board, int depthLimit, long deadline) {
+        table.newSearch();
+        order.newSearch(board);
+        this.deadline = deadline;
+        completedDepth = 0;
+        Board copy = board.getDeepCopy();
+        int empty = (int) Math.min(Integer.MAX_VALUE, (long) board.size() * board.size() - board.stoneCount());
+        int best = -1;
+        // Scores at the root by depth. Whoever moves last gains the most,
+        // so scores swing between odd and even depths: each iteration
+        // expects the score of the one two plies before it.
+        float[] scoreAt = new float[TranspositionTable.MAX_DEPTH + 1];
+        Counters counters = newCounters();
+        Thread[] helpers = startHelpers(copy, Math.min(depthLimit, empty));
+        try {
+            for (int depth = 1; depth <= Math.min(depthLimit, empty); depth++) {
+                try {
+                    best = searchRoot(copy, depth, best, depth <= 2 ? Float.NaN : scoreAt[depth - 2], counters);
+                    scoreAt[depth] = rootScore;
+                    completedDepth = depth;
+                    SearchHandle handle = running;
+                    if (handle != null) handle.update(new Move(best / board.size(), best % board.size(), depth));
+                } catch (OutOfTime e) {
+                    break; // the copy may be left half searched; it is not used again
+                }
+            }
+        } finally {
+            stopHelpers(helpers);
+        }
+        if (best < 0) {
+            // Not even one iteration completed: play the first move that would be searched
+            best = order.order(board, getAdjacentIndexes(board), TranspositionTable.move(table.probe(key(board, true))), this, opponent)[0];
+        }
+        return new int[] { best / board.size(), best % board.size() };
+    }
+
+    /**
+     * Search every move at the root to the given depth and return the
+     * best, picking at random between moves that score the same. The
+     * search starts with a window around the expected score, and widens it while the best score falls outside. Within the window
+     * each move is first searched with the best score so far as alpha,
+     * one step lower, so that a move as good as the best is still scored
+     * exactly. The moves that score best are then the same whatever order
+     * they are searched in, which keeps a search in the pool deterministic.
+     *
+     * @param previous      best move of the last iteration, searched first; or -1
+     * @param expected score expected, or NaN to search with a full window
+     * @param counters counters of this thread
+     * @throws IllegalArgumentException if there is no empty place next to a stone
+     */
+    private int searchRoot(Board board, int depth, int previous, float expected, Counters counters) {
+        int[] moves = order.order(board, getAdjacentIndexes(board), previous, this, opponent);
+        if (moves.length == 0) {
+            throw new IllegalArgumentException("No empty place next to a stone to search");
+        }
+        float[] scores = new float[moves.length];
+        long eval = evaluate(board);
+        float low = Float.NEGATIVE_INFINITY, high = Float.POSITIVE_INFINITY, delta = ASPIRATION;
+        if (Math.abs(expected) < 20000000) { // not NaN, and not a won or lost position
+            low = expected - delta;
+            high = expected + delta;
+        }
+
+        float bestScore;
+        while (true) {
+            if (pool == null) {
+                float alpha = low;
+                for (int i = 0; i < moves.length; i++) {
+                    scores[i] = searchRootMove(board, moves[i], depth, alpha, high, i == 0, eval, counters);
+                    alpha = Math.max(alpha, Math.nextDown(scores[i]));
+                }
+            } else {
+                searchInPool(board, moves, scores, depth, low, high, eval);
+            }
+            bestScore = Float.NEGATIVE_INFINITY;
+            for (float score : scores) bestScore = Math.max(bestScore, score);
+
+            // Outside the window the best score is only a bound: widen the
+            // window past it, unless that side is already open
+            if (bestScore <= low && low != Float.NEGATIVE_INFINITY) {
+                delta *= 4;
+                low = delta >= 20000000 ? Float.NEGATIVE_INFINITY : bestScore - delta;
+            } else if (bestScore >= high && high != Float.POSITIVE_INFINITY) {
+                delta *= 4;
+                high = delta >= 20000000 ? Float.POSITIVE_INFINITY : bestScore + delta;
+            } else {
+                break;
+            }
+        }
+
+        int[] bestMoves = new int[moves.length];
+        int bestCount = 0;
+        for (int i = 0; i < moves.length; i++) {
+            if (scores[i] == bestScore) bestMoves[bestCount++] = moves[i];
+        }
+        // By place, as the order searched in depends on the history, which
+        // threads in the pool update in whatever order they get to it
+        Arrays.sort(bestMoves, 0, bestCount);
+
+        int n = random.nextInt(bestCount);
+        table.store(key(board, true), depth, TranspositionTable.EXACT, bestScore, bestMoves[n]);
+        rootScore = bestScore;
+        return bestMoves[n];
+    }
+
+    /**
+     * Search a move at the root. Unless it is the first move searched, it
+     * is first searched with a null window, which only tells whether it
+     * scores above alpha; only then is it searched again for its score.
+     */
+    private float searchRootMove(Board board, int move, int depth, float alpha, float beta, boolean first, long eval,
+                                 Counters counters) {
+        long child = eval + evalDelta(board, move, this);
+        board.makeMove(move, this);
+        float score;
+        if (first) {
+            score = miniMax(false, board, depth - 1, alpha, beta, child, counters);
+        } else {
+            score = miniMax(false, board, depth - 1, alpha, Math.nextUp(alpha), child, counters);
+            if (score > alpha && score < beta) {
+                score = miniMax(false, board, depth - 1, alpha, beta, child, counters);
+            }
+        }
+        board.unmakeMove();
+        return score;
+    }
+
+    /**
+     * Search the moves at the root at once in the pool, each on a snapshot
+     * of the board taken here, as snapshots are only safe to take on the
+     * thread that owns the board. Tasks starting late use the best score
+     * of the tasks finished before them as alpha.
+     */
+    private void searchInPool(Board board, int[] moves, float[] scores, int depth, float low, float high, long eval) {
+        float[] alpha = { low }; // guarded by itself
+        ForkJoinTask<?>[] tasks = new ForkJoinTask<?>[moves.length];
+        for (int i = 0; i < moves.length; i++) {
+            int move = i;
+            Board snapshot = board.snapshot();
+            tasks[i] = pool.submit(() -> {
+                float from;
+                synchronized (alpha) {
+                    from = alpha[0];
+                }
+                scores[move] = searchRootMove(snapshot, moves[move], depth, from, high, from == low, eval, newCounters());
+                synchronized (alpha) {
+                    alpha[0] = Math.max(alpha[0], Math.nextDown(scores[move]));
+                }
+            });
+        }
+        // Wait for all of them before passing on what one threw, such as
+        // OutOfTime, so that none is still searching when this returns
+        for (ForkJoinTask<?> task : tasks) task.quietlyJoin();
+        for (ForkJoinTask<?> task : tasks) task.join();
+    }
+
+    /**
+     * Start the helper threads, each on its own snapshot of the board,
+     * which is taken here as the board belongs to the calling thread.
+     */
+    private Thread[] startHelpers(Board board, int depthLimit) {
+        helpersStopped = false;
+        Thread[] helpers = new Thread[helperThreads];
+        for (int i = 0; i < helpers.length; i++) {
+            int id = i + 1;
+            Board snapshot = board.snapshot();
+            helpers[i] = new Thread(() -> help(snapshot, id, depthLimit), getName() + " helper " + id);
+            helpers[i].setDaemon(true);
+            helpers[i].start();
+        }
+        return helpers;
+    }
+
+    /** Stop the helper threads and wait for them, so that none outlives the search. */
+    private void stopHelpers(Thread[] helpers) {
+        helpersStopped = true;
+        boolean interrupted = false;
+        for (Thread helper : helpers) {
+            while (helper.isAlive()) {
+                try {
+                    helper.join();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+        }
+        if (interrupted) Thread.currentThread().interrupt();
+    }
+
+    /**
+     * Search as helper number id: deepen like the main search, odd helpers
+     * starting one ply deeper, until stopped. The moves at the root are
+     * rotated by the helper number, after the best one so far, so that the
+     * helpers spread over the moves rather than all search the same ones.
+     */
+    private void help(Board board, int id, int depthLimit) {
+        long key = key(board, true);
+        long eval = evaluate(board);
+        Counters counters = newCounters();
+        try {
+            for (int depth = 1 + id % 2; depth <= Math.min(depthLimit + 1, TranspositionTable.MAX_DEPTH); depth++) {
+                int[] moves = getAdjacentIndexes(board);
+                int shift = id * moves.length / (helperThreads + 1);
+                int[] rotated = new int[moves.length];
+                for (int i = 0; i < moves.length; i++) rotated[i] = moves[(i + shift) % moves.length];
+                float alpha = Float.NEGATIVE_INFINITY;
+                for (int move : tableMoveFirst(rotated, key)) {
+                    float score = searchRootMove(board, move, depth, alpha, Float.POSITIVE_INFINITY, alpha == Float.NEGATIVE_INFINITY, eval, counters);
+                    alpha = Math.max(alpha, score);
+                }
+            }
+        } catch (OutOfTime e) {
+            // stopped; the snapshot is dropped
+        }
     }
 
     /**
      * The meat of the algorithm.
      *
+     * @param isMaximizingPlayer whether the computer is to move
      * @param board        the Omok board to play on
      * @param currentDepth the current depth
+     * @param eval         the evaluation of the board, kept up to date move by move
+     * @param counters     counters of this thread
      * @return the score of the board
      */
-    private float miniMax(Board board, int currentDepth) {
-        return miniMax(true, board, currentDepth, Float.NEGATIVE_INFINITY, Float.POSITIVE_INFINITY);
-    }
+    private float miniMax(Boolean isMaximizingPlayer, Board board, int currentDepth, float alpha, float beta, long eval,
+                          Counters counters) {
+        if (helpersStopped || cancelled) {
+            throw new OutOfTime();
+        }
+        // From the first node of each thread or task in the pool, whose counters start at 0
+        if ((counters.nodes++ & CLOCK_INTERVAL - 1) == 0 && System.nanoTime() - deadline > 0) {
+            throw new OutOfTime();
+        }
 
-    private float miniMax(Boolean isMaximizingPlayer, Board board, int currentDepth, float alpha, float beta) {
-        float score = evalBoard(board);
+        // A result of this position from another order of moves, if it is
+        // deep and tight enough. In the pool only results of this very depth
+        // are taken (or those that hold at any depth): whether a deeper one
+        // is still there would depend on which thread replaced it first.
+        long key = key(board, isMaximizingPlayer);
+        long entry = table.probe(key);
+        counters.tableProbes++;
+        if (entry != 0) counters.tableHits++;
+        int depth = TranspositionTable.depth(entry);
+        if (entry != 0 && (depth == currentDepth || depth == TranspositionTable.MAX_DEPTH || pool == null && depth > currentDepth)) {
+            float stored = TranspositionTable.score(entry);
+            int bound = TranspositionTable.bound(entry);
+            if (bound == TranspositionTable.EXACT
+                    || bound == TranspositionTable.LOWER && stored >= beta
+                    || bound == TranspositionTable.UPPER && stored <= alpha) {
+                return stored;
+            }
+        }
+
+        float score = board.size() == 3 ? evalBoard(board) : eval;
         if (currentDepth == 0 || board.isFull() || board.isWonBy(this) || board.isWonBy(opponent) || score>=20000000 || score<=-20000000) {
-            //return evalBoard(board);
+            counters.evaluations++;
+            // Only a leaf at depth 0 would score differently when searched deeper
+            table.store(key, currentDepth == 0 ? 0 : TranspositionTable.MAX_DEPTH, TranspositionTable.EXACT, score, -1);
             return score;
         }
 
         if (isMaximizingPlayer) {
-            return getMax(board, currentDepth, alpha, beta);
+            return getMax(board, currentDepth, alpha, beta, eval, counters);
         } else {
-            return getMin(board, currentDepth, alpha, beta);
+            return getMin(board, currentDepth, alpha, beta, eval, counters);
         }
     }
 
     /**
-     * Play the move with the highest score.
+     * Play the move with the highest score. The first move is searched
+     * with the full window; every other move first with a null window,
+     * and again with the full one only if it turns out to score higher.
+     * The score is fail-soft: at or below alpha it is an upper bound of
+     * the value, at or above beta a lower bound.
      *
      * @param board      the board to play on
      * @param currentDepth the current depth
      * @return the score of the board
      */
-    private float getMax (Board board, int currentDepth, float alpha, float beta) {
+    private float getMax (Board board, int currentDepth, float alpha, float beta, long eval, Counters counters) {
         float bestScore = -Float.MAX_VALUE;
-        List<Board.Place> bestMoves = new ArrayList<>();
-        //List<Board.Place> emptyCells = getEmptyCellsIndexes(board);
-        Set<Board.Place> adjacentCells = getAdjacentIndexes(board);
-
-        for (Board.Place position : adjacentCells) {
-
-            board.placeStone(position.x, position.y, this);
-            float score = miniMax(false, board, currentDepth-1, alpha, beta);
-            board.placeStone(position.x, position.y, null);
-
-            if (score >= bestScore) {
-                if(score == bestScore) {
-                    bestMoves.add(position);
-                } else {
-                    bestMoves.clear();
-                    bestMoves.add(position);
+        long key = key(board, true);
+        int[] adjacentCells = order.order(board, getAdjacentIndexes(board), TranspositionTable.move(table.probe(key)), this, opponent);
+        int bestMove = -1;
+        float alphaBefore = alpha;
+
+        for (int i = 0; i < adjacentCells.length; i++) {
+            int position = adjacentCells[i];
+
+            long child = eval + evalDelta(board, position, this);
+            board.makeMove(position, this);
+            float score;
+            if (i == 0) {
+                score = miniMax(false, board, currentDepth-1, alpha, beta, child, counters);
+            } else {
+                score = miniMax(false, board, currentDepth-1, alpha, Math.nextUp(alpha), child, counters);
+                if (score > alpha && score < beta) {
+                    score = miniMax(false, board, currentDepth-1, alpha, beta, child, counters);
                 }
-                bestScore = score;
             }
+            board.unmakeMove();
 
-            alpha = Math.max(alpha,score);
-
-            if(beta<=alpha) { // change to <= to improve performance, keep it as < so AI has variety of moves
-                bestScore=30000000f;
+            if (score > bestScore || bestMove < 0) {
+                bestScore = score;
+                bestMove = position;
+            }
+            alpha = Math.max(alpha, score);
+            if (beta <= alpha) {
+                order.cutoff(board, position, currentDepth, this);
+                counters.cutoffs++;
+                if (i == 0) counters.firstMoveCutoffs++;
                 break;
             }
-
         }
 
-        if(currentDepth == maxDepth) {
-            int n = random.nextInt(bestMoves.size());
-            System.out.printf("Best Score: %s, n: %s\n",bestScore, n);
-            for(Board.Place move : bestMoves)
-                System.out.printf("x: %s, y: %s\n",move.x, move.y);
-            return bestMoves.get(n).x * board.size() + bestMoves.get(n).y; // returns the best move found
-        } else {
-            return bestScore;
-        }
+        int bound = bestScore >= beta ? TranspositionTable.LOWER
+                : bestScore > alphaBefore ? TranspositionTable.EXACT : TranspositionTable.UPPER;
+        table.store(key, currentDepth, bound, bestScore, bestMove);
+        return bestScore;
     }
 
     /**
-     * Play the move with the lowest score.
+     * Play the move with the lowest score, searched the same way as in
+     * {@link #getMax} with the roles of alpha and beta swapped.
      * @param board         The Omok board to play on
      * @param currentDepth  The current depth
      * @return              The score of the board
      */
-    private float getMin (Board board, int currentDepth, float alpha, float beta) {
+    private float getMin (Board board, int currentDepth, float alpha, float beta, long eval, Counters counters) {
         float bestScore = Float.MAX_VALUE;
-        //List<Board.Place> emptyCells = getEmptyCellsIndexes(board);
-        Set<Board.Place> adjacentCells = getAdjacentIndexes(board);
-
-        for (Board.Place position : adjacentCells) {
+        long key = key(board, false);
+        int[] adjacentCells = order.order(board, getAdjacentIndexes(board), TranspositionTable.move(table.probe(key)), opponent, this);
+        int bestMove = -1;
+        float betaBefore = beta;
 
-            board.placeStone(position.x, position.y, opponent);
-            float score = miniMax(true, board, currentDepth-1, alpha, beta);
-            board.placeStone(position.x, position.y, null);
+        for (int i = 0; i < adjacentCells.length; i++) {
+            int position = adjacentCells[i];
 
-            bestScore = Math.min(score, bestScore);
-
-            beta = Math.min(beta,score);
+            long child = eval + evalDelta(board, position, opponent);
+            board.makeMove(position, opponent);
+            float score;
+            if (i == 0) {
+                score = miniMax(true, board, currentDepth-1, alpha, beta, child, counters);
+            } else {
+                score = miniMax(true, board, currentDepth-1, Math.nextDown(beta), beta, child, counters);
+                if (score < beta && score > alpha) {
+                    score = miniMax(true, board, currentDepth-1, alpha, beta, child, counters);
+                }
+            }
+            board.unmakeMove();
 
-            if(beta<=alpha) { // change to <= to improve performance, keep it as < so AI has variety of moves
-                bestScore=-30000000f;
+            if (score < bestScore || bestMove < 0) {
+                bestScore = score;
+                bestMove = position;
+            }
+            beta = Math.min(beta, score);
+            if (beta <= alpha) {
+                order.cutoff(board, position, currentDepth, opponent);
+                counters.cutoffs++;
+                if (i == 0) counters.firstMoveCutoffs++;
                 break;
             }
         }
 
+        int bound = bestScore <= alpha ? TranspositionTable.UPPER
+                : bestScore < betaBefore ? TranspositionTable.EXACT : TranspositionTable.LOWER;
+        table.store(key, currentDepth, bound, bestScore, bestMove);
         return bestScore;
     }
 
+    /**
+     * Return the key of the position in the transposition table. Besides
+     * the stones it tells who is to move, and whether this computer's
+     * stones are side 0 of the board, as its scores are from its own view.
+     */
+    private long key(Board board, boolean isMaximizingPlayer) {
+        long key = board.hash();
+        if (isMaximizingPlayer) key ^= MAXIMIZING;
+        if (board.knownSide(this) == 0) key ^= PERSPECTIVE;
+        return key;
+    }
+
+    /** Move the best move found for the position by an earlier search, if any, to the front. */
+    private int[] tableMoveFirst(int[] moves, long key) {
+        return moveFirst(moves, TranspositionTable.move(table.probe(key)));
+    }
+
+    /** Move the given move to the front, if it is one of the moves. */
+    private static int[] moveFirst(int[] moves, int best) {
+        for (int i = 1; best >= 0 && i < moves.length; i++) {
+            if (moves[i] == best) {
+                System.arraycopy(moves, 0, moves, 1, i);
+                moves[0] = best;
+                break;
+            }
+        }
+        return moves;
+    }
+
     /**
      * Get the score of the board.
      * @param board         The Omok board to play on
@@ -201,97 +1072,90 @@ public class Computer extends Player {
             }
         }
 
-        // EVALUATION FOR GOMOKU
-        List<String> state = boardToString(board.getBoard());
-
-        float score = 0;
-        for(String boardPos : state) {
-            for(int i=0; i<boardPos.length()-5; i++) {
-                String subState = boardPos.substring(i,i+5);
-                if(scoreFromPosition.containsKey(subState)) {
-                    score += scoreFromPosition.get(subState);
-                }
-            }
-            for(int i=0; i<boardPos.length()-6; i++) {
-                String subState = boardPos.substring(i,i+6);
-                if(scoreFromPosition.containsKey(subState)) {
-                    score += scoreFromPosition.get(subState);
-                }
-            }
-        }
-
-        return score;
+        return evaluate(board);
     }
 
     /**
-     * Return a String representation of the board. The string is represented
-     * using "0" for a null value, "1" for Computer, and "2" for the opponent.
-     *
-     * @param board
-     * @return
-     */
-    private List<String> boardToString(Player[][] board) {
-        List<String> cList = new ArrayList<>(), rList = new ArrayList<>(), dList = new ArrayList<>();
-
-        for(Player[] row : board) {
-            StringBuilder rowVals = new StringBuilder();
-            for(Player player : row) {
-                if(player == this) rowVals.append("1");
-                else if(player == opponent) rowVals.append("2");
-                else rowVals.append("0");
-            }
-            rList.add(rowVals.toString());
-        }
+     * Return the evaluation of a Gomoku board: the sum of the scores of
+     * the windows of five and six places along every line. It is summed
+     * as a long, so that adding the changes of {@link #evalDelta} to it
+     * gives the very same value whatever the order of the moves.
+     */
+    private long evaluate(Board board) {
+        Geometry.Lines lines = board.geometry().lines();
+        long score = 0;
 
-        for(int col=0; col<board.length; col++) {
-            StringBuilder colVals = new StringBuilder();
-            for(int row=0; row<board[0].length; row++) {
-                if(board[row][col] == this) colVals.append("1");
-                else if(board[row][col] == opponent) colVals.append("2");
-                else colVals.append("0");
-            }
-            cList.add(colVals.toString());
-        }
-
-        StringBuilder diagVals;
-        for( int k = 0 ; k < board.length * 2 ; k++ ) {
-            diagVals = new StringBuilder();
-            for( int j = 0 ; j <= k ; j++ ) {
-                int i = k - j;
-                if( i < board.length && j < board.length ) {
-                    if(board[i][j] == this) diagVals.append("1");
-                    else if(board[i][j] == opponent) diagVals.append("2");
-                    else diagVals.append("0");
-                }
+        long[] lineStones = board.lineStones();
+        if (lineStones == null) {
+            // Rows, columns, diagonals and inverted diagonals, as in Geometry.DIRECTIONS
+            for (int line = 0; line < lines.start.length; line++) {
+                score += lineScore(board, lines, line, 0, lines.length[line] - 1);
             }
-            dList.add(diagVals.toString());
+            return score;
         }
 
-        for (int i = board.length - 1; i > 0; i--) {
-            diagVals = new StringBuilder();
-            for (int j = 0, x = i; x <= board.length - 1; j++, x++) {
-                if(board[i][j] == this) diagVals.append("1");
-                else if(board[i][j] == opponent) diagVals.append("2");
-                else diagVals.append("0");
+        // Only the lines through a stone, from 5 places before their first
+        // stone to 5 after their last: no pattern is found in empty places
+        for (int s = 0; s < lineStones.length; ) {
+            int line = (int) (lineStones[s] >>> 32);
+            int from = (int) lineStones[s], to = from;
+            for (; s < lineStones.length && (int) (lineStones[s] >>> 32) == line; s++) {
+                to = (int) lineStones[s];
             }
-            dList.add(diagVals.toString());
+            score += lineScore(board, lines, line, Math.max(0, from - 5), Math.min(lines.length[line] - 1, to + 5));
         }
+        return score;
+    }
 
+    /**
+     * Return the sum of the scores of the windows of five and six places
+     * along a line from one offset to another. The code of the last six
+     * places is rolled along, so no window is built.
+     */
+    private long lineScore(Board board, Geometry.Lines lines, int line, int from, int to) {
+        int step = lines.step[lines.direction(line)];
+        long score = 0;
+        int code = 0;
+        for (int k = from, i = lines.start[line] + from * step; k <= to; k++, i += step) {
+            code = (code * 3 + cell(board, i)) % 729;
+            if (k - from >= 4) score += fiveScores[code % 243];
+            if (k - from >= 5) score += sixScores[code];
+        }
+        return score;
+    }
 
-        for (int i = 0; i <= board.length - 1; i++) {
-            diagVals = new StringBuilder();
-            for (int j = 0, y = i; y <= board.length - 1; j++, y++) {
-                if(board[j][y] == this) diagVals.append("1");
-                else if(board[j][y] == opponent) diagVals.append("2");
-                else diagVals.append("0");
+    /**
+     * Return how much {@link #evaluate} changes when the player puts a
+     * stone on the empty place with the given index. Only the windows
+     * through the place change, so only the five places on either side
+     * of it along its four lines are read; the codes of the windows with
+     * and without the stone are rolled along together.
+     */
+    private long evalDelta(Board board, int index, Player player) {
+        Geometry.Lines lines = board.geometry().lines();
+        int stone = player == this ? 1 : 2;
+        long delta = 0;
+        for (int d = 0; d < Geometry.DIRECTIONS.length; d++) {
+            int line = lines.line(d, index), offset = lines.offset(d, index), step = lines.step[d];
+            int from = Math.max(0, offset - 5), to = Math.min(lines.length[line] - 1, offset + 5);
+            int before = 0, after = 0;
+            for (int k = from, i = index + (from - offset) * step; k <= to; k++, i += step) {
+                int cell = cell(board, i);
+                before = (before * 3 + cell) % 729;
+                after = (after * 3 + (k == offset ? stone : cell)) % 729;
+                // Only the windows ending here that start at or before the place
+                if (k >= offset && k - from >= 4 && k - 4 <= offset) delta += fiveScores[after % 243] - fiveScores[before % 243];
+                if (k >= offset && k - from >= 5 && k - 5 <= offset) delta += sixScores[after] - sixScores[before];
             }
-            dList.add(diagVals.toString());
         }
-        List<String> boardString = new ArrayList<>();
-        boardString.addAll(rList);
-        boardString.addAll(cList);
-        boardString.addAll(dList);
-        return boardString;
+        return delta;
+    }
+
+    /** Return the digit of the place with the given index: 0 if empty, 1 for this computer, 2 for the opponent. */
+    private int cell(Board board, int index) {
+        Player player = board.playerAt(index);
+        if (player == this) return 1;
+        return player == opponent ? 2 : 0;
     }
 
     /**
@@ -304,52 +1168,19 @@ public class Computer extends Player {
         List<Board.Place> availableCellsList = new ArrayList<>();
         for(int row = 0; row<board.size(); row++) {
             for(int col = 0; col<board.size(); col++) {
-                if(board.isEmpty(row,col)) availableCellsList.add(new Board.Place(row,col));
+                if(board.isEmpty(row,col)) availableCellsList.add(board.place(board.index(row,col)));
             }
         }
         return availableCellsList;
     }
 
-    private Set<Board.Place> getAdjacentIndexes(Board board) {
-        Set<Board.Place> adjacentIndexesSet = new HashSet<>();
-
-        for(Board.Place occupied : board.getOccupiedPositions()) {
-            adjacentIndex(board, occupied.x, occupied.y, adjacentIndexesSet);
-        }
-
-        return adjacentIndexesSet;
-    }
-
-    private void adjacentIndex(Board board, int x, int y, Set<Board.Place> setToAdd) {
-        // Size of given 2d array
-        int n = board.size();
-        int m = board.size();
-
-        // Checking for all the possible adjacent positions
-        if (isValidPos(board, x - 1, y - 1, n, m)) {
-            setToAdd.add(new Board.Place(x - 1,y - 1));
-        }
-        if (isValidPos(board, x - 1, y, n, m)) {
-            setToAdd.add(new Board.Place(x - 1,y));
-        }
-        if (isValidPos(board, x - 1, y + 1, n, m)) {
-            setToAdd.add(new Board.Place(x - 1,y + 1));
-        }
-        if (isValidPos(board, x, y - 1, n, m)) {
-            setToAdd.add(new Board.Place(x,y - 1));
-        }
-        if (isValidPos(board, x, y + 1, n, m)) {
-            setToAdd.add(new Board.Place(x,y + 1));
-        }
-        if (isValidPos(board, x + 1, y - 1, n, m)) {
-            setToAdd.add(new Board.Place(x + 1,y - 1));
-        }
-        if (isValidPos(board, x + 1, y, n, m)) {
-            setToAdd.add(new Board.Place(x + 1,y));
-        }
-        if (isValidPos(board, x + 1, y + 1, n, m)) {
-            setToAdd.add(new Board.Place(x + 1,y + 1));
-        }
+    /**
+     * Return the indexes of the empty places next to a stone, each once.
+     *
+     * @param board The Omok board to play on
+     */
+    private int[] getAdjacentIndexes(Board board) {
+        return Neighbours.of(board);
     }
 
     public static boolean isValidPos(Board board, int x, int y, int rowSize, int colSize) {
@@ -357,21 +1188,13 @@ public class Computer extends Player {
     }
 
     private int[] makeRandomMove(Board board) {
-        Set<Board.Place> moveSet = new HashSet<>();
-        adjacentIndex(board, (board.size()-1)/2, (board.size()-1)/2, moveSet);
-        if(board.isEmpty((board.size()-1)/2,(board.size()-1)/2))
-            return new int[]{(board.size()-1)/2,(board.size()-1)/2};
-
-        int n = random.nextInt(moveSet.size());
-
-        int i =0;
-        for(Board.Place move : moveSet) {
-            if(i==n) return new int[]{move.x, move.y};
-            i++;
-        }
+        int center = (board.size()-1)/2;
+        if(board.isEmpty(center,center))
+            return new int[]{center,center};
 
-        Board.Place move = moveSet.iterator().next();
-        return new int[]{move.x, move.y};
+        int[] moves = Neighbours.around(board, center, center);
+        int move = moves[random.nextInt(moves.length)];
+        return new int[]{move / board.size(), move % board.size()};
     }
 
 }
\ No newline at end of file
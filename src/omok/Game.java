@@ -17,9 +17,7 @@ public class Game {
         boolean gameState;
 
         // If there is a winner, end game
-        for(Player player : players) {
-            if(board.isWonBy(player)) return true;
-        }
+        if(board.winner() != null) return true;
 
         // if board is full, end the game
         gameState = board.isFull();
@@ -35,7 +33,7 @@ public class Game {
             return false;
         }
 
-        if(move[0] > board.size() || move[1] > board.size()) {
+        if(move[0] < 0 || move[1] < 0 || move[0] >= board.size() || move[1] >= board.size()) {
             System.out.println("Enter a valid move!");
             return false;
         } else {
@@ -45,15 +43,47 @@ public class Game {
 
     public void makeMove(Player player, String userInput) {
         int[] move = parseMove(userInput);
-        board.placeStone(move[0],move[1],player);
+        board.makeMove(move[0],move[1],player);
+    }
+
+    /** Return whether the user asked to take back a move. */
+    public boolean isUndo(String userInput) {
+        return userInput.trim().equalsIgnoreCase("undo");
+    }
+
+    /**
+     * Take back the last move, and the one before it if the last move was
+     * a computer's, so that a human player is to move again.
+     *
+     * @return The number of moves taken back.
+     */
+    public int takeBack() {
+        int count = 0;
+        while(board.moveCount() > 0) {
+            Board.Place last = board.lastMove();
+            Player player = board.playerAt(last.x, last.y);
+            board.unmakeMove();
+            count++;
+            if(!(player instanceof Computer)) break;
+        }
+        return count;
     }
 
     // Helper method
     public int[] parseMove(String userInput) throws ArrayIndexOutOfBoundsException {
         String splitRegex = "[ ,]";
         String[] move = userInput.split(splitRegex);
-        return new int[]{Integer.parseInt(move[1], board.size()+1)-1,
-                         Integer.parseInt(move[0], board.size()+1)-1};
+        return new int[]{Integer.parseInt(move[1], radix())-1,
+                         Integer.parseInt(move[0], radix())-1};
+    }
+
+    /**
+     * Return the radix of the coordinates on the board: one digit per
+     * row and column where digits and letters suffice, decimal on
+     * larger boards.
+     */
+    public int radix() {
+        return board.size() < Character.MAX_RADIX ? board.size()+1 : 10;
     }
 }
 
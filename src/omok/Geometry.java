@@ -0,0 +1,210 @@
+package omok;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Tables that depend only on the size of a board, built once per size and
+ * shared by every {@link Board} of that size. Places are addressed by
+ * their index x * size + y.
+ */
+final class Geometry {
+
+    /** Boards up to this size get precomputed keys and places; larger ones compute them on demand. */
+    static final int MAX_TABLE_SIZE = 64;
+
+    /**
+     * Directions of the four lines through a place: row, column, diagonal
+     * and inverted diagonal. Along an inverted diagonal x decreases.
+     */
+    static final int[][] DIRECTIONS = {{0, 1}, {1, 0}, {1, 1}, {-1, 1}};
+
+    private static final Map<Integer, Geometry> CACHE = new ConcurrentHashMap<>();
+    private static final long GOLDEN_GAMMA = 0x9e3779b97f4a7c15L;
+
+    final int size;
+    private final long seed;
+
+    /** Zobrist keys, two per place: [index * 2 + side]. Null on large boards. */
+    private final long[] keys;
+
+    /** One shared place per index. Null on large boards. */
+    private final Board.Place[] places;
+
+    /** Built on first use; a race only builds the same immutable tables twice. */
+    private Lines lines;
+
+    private Geometry(int size) {
+        this.size = size;
+        this.seed = mix(GOLDEN_GAMMA * (size + 1));
+        if (size <= MAX_TABLE_SIZE) {
+            keys = new long[2 * size * size];
+            for (int i = 0; i < keys.length; i++) {
+                keys[i] = computeKey(i);
+            }
+            places = new Board.Place[size * size];
+            for (int i = 0; i < places.length; i++) {
+                places[i] = new Board.Place(i / size, i % size);
+            }
+        } else {
+            keys = null;
+            places = null;
+        }
+    }
+
+    /** Return the geometry of boards of the given size. */
+    static Geometry of(int size) {
+        return CACHE.computeIfAbsent(size, Geometry::new);
+    }
+
+    /** Return the line tables of this board size. */
+    Lines lines() {
+        Lines lines = this.lines;
+        if (lines == null) {
+            lines = new Lines(size);
+            this.lines = lines;
+        }
+        return lines;
+    }
+
+    /**
+     * Return the Zobrist key of a stone of the given side (0 or 1) at the
+     * place with the given index. Keys are the same on every run, so hashes
+     * can be stored in files and compared across processes.
+     */
+    long key(int index, int side) {
+        int i = 2 * index + side;
+        return keys != null ? keys[i] : computeKey(i);
+    }
+
+    /** Return the place with the given index; the same object every time on small boards. */
+    Board.Place place(int index) {
+        return places != null ? places[index] : new Board.Place(index / size, index % size);
+    }
+
+    /** Return the place (x, y), which may lie off the board. */
+    Board.Place place(int x, int y) {
+        if (places != null && x >= 0 && y >= 0 && x < size && y < size) return places[x * size + y];
+        return new Board.Place(x, y);
+    }
+
+    private long computeKey(int i) {
+        return mix(seed + GOLDEN_GAMMA * (i + 1L));
+    }
+
+    /** The finalizer of SplitMix64: a bijective mix of all 64 bits. */
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+
+    /**
+     * Every line of the board in each of the four {@link #DIRECTIONS},
+     * together with the line through each place in each direction and the
+     * offset of the place along it. A line is its first index, the index
+     * step of its direction and its length, so every scan of the board is
+     * the same loop over {@code start + k * step}. Small boards also get
+     * a table of line and offset per place; on larger boards they are
+     * computed, as the tables would take 8 ints per place.
+     */
+    static final class Lines {
+
+        /** Index of the first line of each direction, with first[4] == count. */
+        final int[] first = new int[DIRECTIONS.length + 1];
+
+        /** Index step between neighbours along each direction. */
+        final int[] step = new int[DIRECTIONS.length];
+
+        /** First index of each line. */
+        final int[] start;
+
+        /** Number of places on each line. */
+        final int[] length;
+
+        private final int size;
+
+        /** Line and offset of each place per direction: [d * size * size + index]. Null on large boards. */
+        private final int[] lineOf, offsetOf;
+
+        private Lines(int size) {
+            this.size = size;
+            int count = 0;
+            for (int d = 0; d < DIRECTIONS.length; d++) {
+                first[d] = count;
+                step[d] = DIRECTIONS[d][0] * size + DIRECTIONS[d][1];
+                count += size == 0 ? 0 : d < 2 ? size : 2 * size - 1;
+            }
+            first[DIRECTIONS.length] = count;
+            start = new int[count];
+            length = new int[count];
+
+            // A line starts at every place whose predecessor is off the board,
+            // taken in row-major order; between the first and the last row
+            // that can only be the first place of the row
+            for (int d = 0, line = 0; d < DIRECTIONS.length; d++) {
+                int dx = DIRECTIONS[d][0], dy = DIRECTIONS[d][1];
+                for (int x = 0; x < size; x++) {
+                    int columns = x == 0 || x == size - 1 ? size : 1;
+                    for (int y = 0; y < columns; y++) {
+                        if (onBoard(x - dx, y - dy)) continue;
+                        start[line] = x * size + y;
+                        length[line++] = Math.min(dx > 0 ? size - x : dx < 0 ? x + 1 : size,
+                                                  dy > 0 ? size - y : size);
+                    }
+                }
+            }
+
+            if (size > MAX_TABLE_SIZE) {
+                lineOf = offsetOf = null;
+                return;
+            }
+            int area = size * size;
+            lineOf = new int[DIRECTIONS.length * area];
+            offsetOf = new int[DIRECTIONS.length * area];
+            for (int d = 0; d < DIRECTIONS.length; d++) {
+                for (int line = first[d]; line < first[d + 1]; line++) {
+                    for (int k = 0, i = start[line]; k < length[line]; k++, i += step[d]) {
+                        lineOf[d * area + i] = line;
+                        offsetOf[d * area + i] = k;
+                    }
+                }
+            }
+        }
+
+        /** Return the line through the place with the given index in direction d. */
+        int line(int d, int index) {
+            if (lineOf != null) return lineOf[d * size * size + index];
+            int x = index / size, y = index % size;
+            return first[d] + switch (d) {
+                case 0 -> x;
+                case 1 -> y;
+                case 2 -> x <= y ? y - x : size - 1 + x - y;
+                default -> x + y;
+            };
+        }
+
+        /** Return the direction of the given line. */
+        int direction(int line) {
+            int d = 0;
+            while (line >= first[d + 1]) d++;
+            return d;
+        }
+
+        /** Return the position of the place with the given index along its line in direction d. */
+        int offset(int d, int index) {
+            if (offsetOf != null) return offsetOf[d * size * size + index];
+            int x = index / size, y = index % size;
+            return switch (d) {
+                case 0 -> y;
+                case 1 -> x;
+                case 2 -> Math.min(x, y);
+                default -> Math.min(y, size - 1 - x);
+            };
+        }
+
+        private boolean onBoard(int x, int y) {
+            return x >= 0 && y >= 0 && x < size && y < size;
+        }
+    }
+}
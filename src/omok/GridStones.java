@@ -0,0 +1,62 @@
+package omok;
+
+import java.util.Arrays;
+
+/**
+ * The original storage of a {@link Board}: a grid of player references.
+ * The grid handed out by {@link #toArray()} is the live storage, so
+ * writes through it are seen by the board.
+ */
+class GridStones implements Stones {
+    private final Player[][] board;
+
+    GridStones(int size) throws NegativeArraySizeException {
+        this.board = new Player[size][size];
+    }
+
+    @Override
+    public Player get(int x, int y) {
+        return board[x][y];
+    }
+
+    @Override
+    public Player get(int index) {
+        return board[index / board.length][index % board.length];
+    }
+
+    @Override
+    public void set(int x, int y, Player player) {
+        board[x][y] = player;
+    }
+
+    @Override
+    public void clear() {
+        for(Player[] row : board) {
+            Arrays.fill(row, null);
+        }
+    }
+
+    @Override
+    public boolean isFull() {
+        for(Player[] row : board) {
+            for (Player element : row) {
+                if (element == null) return false; // if it has an empty spot, it is not full
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public Player[][] toArray() {
+        return board;
+    }
+
+    @Override
+    public Stones copy(Player[] sides) {
+        GridStones copy = new GridStones(board.length);
+        for(int row = 0; row < board.length; row++) {
+            System.arraycopy(board[row], 0, copy.board[row], 0, board.length);
+        }
+        return copy;
+    }
+}
@@ -0,0 +1,116 @@
+package omok;
+
+import java.util.Arrays;
+
+/**
+ * A set of board indices with constant time add, remove and lookup, and
+ * no allocation once it has been created. The members are kept densely
+ * in an array, and a second array maps each index to its slot there, so
+ * removing swaps the last member into the freed slot. Iteration order is
+ * therefore insertion order only until the first removal. A sparse set
+ * keeps that map in an {@link IntMap} instead, so it only takes memory
+ * for its members.
+ */
+class IndexSet {
+    private final int capacity;
+
+    /** Slot + 1 of each member of a sparse set; null for a dense set. */
+    private final IntMap slotMap;
+    private int[] members;
+    private int[] slots;
+    private int size;
+
+    /** Create an empty set for indices 0 to capacity - 1. */
+    IndexSet(int capacity) {
+        this.capacity = capacity;
+        this.slotMap = null;
+    }
+
+    private IndexSet(int capacity, IntMap slotMap) {
+        this.capacity = capacity;
+        this.slotMap = slotMap;
+        this.members = new int[16];
+    }
+
+    /** Create an empty sparse set for indices 0 to capacity - 1. */
+    static IndexSet sparse(int capacity) {
+        return new IndexSet(capacity, new IntMap());
+    }
+
+    /** Add the index; return false if it was already a member. */
+    boolean add(int index) {
+        if (members == null) {
+            // Allocated on first use so that a huge board that is never played on stays cheap
+            members = new int[capacity];
+            slots = new int[capacity];
+        }
+        if (contains(index)) return false;
+        if (size == members.length) members = Arrays.copyOf(members, 2 * size);
+        members[size] = index;
+        setSlot(index, ++size);
+        return true;
+    }
+
+    /** Remove the index; return false if it was not a member. */
+    boolean remove(int index) {
+        if (!contains(index)) return false;
+        int slot = slot(index) - 1;
+        int last = members[--size];
+        members[slot] = last;
+        setSlot(last, slot + 1);
+        setSlot(index, 0);
+        return true;
+    }
+
+    boolean contains(int index) {
+        return members != null && slot(index) != 0;
+    }
+
+    /** Return the member in the given slot, 0 &lt;= i &lt; size(). */
+    int get(int i) {
+        if (i >= size) throw new IndexOutOfBoundsException("Index " + i + " out of bounds for size " + size);
+        return members[i];
+    }
+
+    int size() {
+        return size;
+    }
+
+    void clear() {
+        for (int i = 0; i < size; i++) {
+            setSlot(members[i], 0);
+        }
+        size = 0;
+    }
+
+    IndexSet copy() {
+        if (slotMap != null) {
+            IndexSet copy = new IndexSet(capacity, slotMap.copy());
+            copy.members = members.clone();
+            copy.size = size;
+            return copy;
+        }
+        IndexSet copy = new IndexSet(capacity);
+        if (slots != null) {
+            copy.members = members.clone();
+            copy.slots = slots.clone();
+            copy.size = size;
+        }
+        return copy;
+    }
+
+    /** Slot + 1 of the index, or 0 if it is not a member. */
+    private int slot(int index) {
+        return slotMap != null ? slotMap.get(index) : slots[index];
+    }
+
+    private void setSlot(int index, int slot) {
+        if (slotMap == null) {
+            slots[index] = slot;
+        } else if (slot == 0) {
+            slotMap.remove(index);
+        } else {
+            slotMap.put(index, slot);
+        }
+    }
+}
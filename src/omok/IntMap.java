@@ -0,0 +1,107 @@
+package omok;
+
+import java.util.Arrays;
+
+/**
+ * A map from non-negative ints to non-zero ints with open addressing and
+ * linear probing, for the structures of a sparse board: their keys range
+ * over the whole board but they only hold entries for the stones, so
+ * their size follows the number of stones instead of the area. A value
+ * of 0 means that the key is absent.
+ */
+final class IntMap {
+    /** Key + 1 of each slot, 0 for a free slot. */
+    private int[] keys;
+    private int[] values;
+    private int size;
+
+    /** Create an empty map. */
+    IntMap() {
+        keys = new int[16];
+        values = new int[16];
+    }
+
+    private IntMap(IntMap other) {
+        keys = other.keys.clone();
+        values = other.values.clone();
+        size = other.size;
+    }
+
+    /** Return the value of the key, or 0 if it is absent. */
+    int get(int key) {
+        int mask = keys.length - 1;
+        for (int i = slot(key, mask); keys[i] != 0; i = (i + 1) & mask) {
+            if (keys[i] == key + 1) return values[i];
+        }
+        return 0;
+    }
+
+    /** Map the key to the value, which must not be 0. */
+    void put(int key, int value) {
+        int mask = keys.length - 1;
+        int i = slot(key, mask);
+        for (; keys[i] != 0; i = (i + 1) & mask) {
+            if (keys[i] == key + 1) {
+                values[i] = value;
+                return;
+            }
+        }
+        keys[i] = key + 1;
+        values[i] = value;
+        if (++size > keys.length / 2) resize();
+    }
+
+    /** Remove the key; return its value, or 0 if it was absent. */
+    int remove(int key) {
+        int mask = keys.length - 1;
+        int i = slot(key, mask);
+        while (keys[i] != key + 1) {
+            if (keys[i] == 0) return 0;
+            i = (i + 1) & mask;
+        }
+        int value = values[i];
+        size--;
+
+        // Shift later entries of the probe sequence back into the hole
+        for (int j = (i + 1) & mask; keys[j] != 0; j = (j + 1) & mask) {
+            int home = slot(keys[j] - 1, mask);
+            if (((j - home) & mask) >= ((j - i) & mask)) {
+                keys[i] = keys[j];
+                values[i] = values[j];
+                i = j;
+            }
+        }
+        keys[i] = 0;
+        values[i] = 0;
+        return value;
+    }
+
+    int size() {
+        return size;
+    }
+
+    void clear() {
+        Arrays.fill(keys, 0);
+        Arrays.fill(values, 0);
+        size = 0;
+    }
+
+    IntMap copy() {
+        return new IntMap(this);
+    }
+
+    private void resize() {
+        int[] oldKeys = keys, oldValues = values;
+        keys = new int[oldKeys.length * 2];
+        values = new int[oldValues.length * 2];
+        size = 0;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != 0) put(oldKeys[i] - 1, oldValues[i]);
+        }
+    }
+
+    private static int slot(int key, int mask) {
+        int h = key * 0x9e3779b9;
+        return (h ^ h >>> 16) & mask;
+    }
+}
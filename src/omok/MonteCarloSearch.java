@@ -0,0 +1,252 @@
+package omok;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Monte Carlo tree search: a tree of the positions reached so far is grown
+ * one position per playout, and each playout finishes the game with quick
+ * semi-random moves. The tree is walked down by UCT, which balances the
+ * share of playouts a move has won against how rarely it has been tried,
+ * and the move played is the one tried most at the root. The search can
+ * stop at any time and gets stronger the longer it runs.
+ * <p>
+ * Several threads may grow one tree at once. Each walks it on a board of
+ * its own and counts the moves it passes as lost until its playout is
+ * done, a virtual loss that steers the other threads to other moves. The
+ * counts of a position are guarded by its lock.
+ */
+final class MonteCarloSearch {
+    /** Weight of exploring moves tried less often against playing the moves that won the most. */
+    private static final double EXPLORATION = 0.8;
+
+    /** Moves a playout makes at most before it counts as a draw. */
+    private static final int PLAYOUT_MOVES = 60;
+
+    /** A position in the tree, with counts per move kept under its lock. */
+    private static final class Node {
+        /** Moves from this position, best first by the move order, or null until expanded. */
+        int[] moves;
+        Node[] children;
+        int[] visits;
+        /** Playouts each move won, a draw counting half, for the player who made it. */
+        float[] wins;
+        int total;
+    }
+
+    private final MoveOrder order;
+    private final Node root = new Node();
+    private final AtomicLong playouts = new AtomicLong();
+
+    MonteCarloSearch(MoveOrder order) {
+        this.order = order;
+    }
+
+    /**
+     * Grow the tree from the position on the board, with the mover to
+     * move, until the given number of playouts is done or the deadline has
+     * passed or the search is stopped, and return the index of the move
+     * tried most.
+     *
+     * @param threads  number of threads growing the tree, the caller's included
+     * @param deadline a System.nanoTime() value
+     * @param stopped  tells whether to stop; asked before every playout
+     */
+    int search(Board board, Player mover, Player other, int threads, long limit, long deadline, Random random,
+               BooleanSupplier stopped) {
+        Thread[] workers = new Thread[threads - 1];
+        for (int i = 0; i < workers.length; i++) {
+            Board snapshot = board.snapshot();
+            Random own = new Random(random.nextLong());
+            workers[i] = new Thread(() -> grow(snapshot, mover, other, limit, deadline, own, stopped), "Monte Carlo " + (i + 1));
+            workers[i].setDaemon(true);
+            workers[i].start();
+        }
+        try {
+            grow(board.snapshot(), mover, other, limit, deadline, new Random(random.nextLong()), stopped);
+        } finally {
+            boolean interrupted = false;
+            for (Thread worker : workers) {
+                while (worker.isAlive()) {
+                    try {
+                        worker.join();
+                    } catch (InterruptedException e) {
+                        interrupted = true;
+                    }
+                }
+            }
+            if (interrupted) Thread.currentThread().interrupt();
+        }
+
+        synchronized (root) {
+            if (root.moves == null) expand(root, board, mover, other);
+            int best = 0;
+            for (int i = 1; i < root.moves.length; i++) {
+                if (root.visits[i] > root.visits[best]) best = i;
+            }
+            return root.moves[best];
+        }
+    }
+
+    /** Return the number of playouts done so far. */
+    long playouts() {
+        return playouts.get();
+    }
+
+    /** Run playouts on the board, which is this thread's own, until the limit, the deadline or a stop. */
+    private void grow(Board board, Player mover, Player other, long limit, long deadline, Random random,
+                      BooleanSupplier stopped) {
+        // The path down the tree, grown with it: on a large sparse board it
+        // could not be sized by the number of places
+        Node[] path = new Node[16];
+        int[] chosen = new int[path.length];
+        int start = board.moveCount();
+        while (playouts.getAndIncrement() < limit && System.nanoTime() - deadline < 0 && !stopped.getAsBoolean()) {
+            int depth = 0;
+            Node node = root;
+            Player player = mover, opponent = other;
+            Player winner = null;
+            boolean over = false;
+
+            // Walk down the tree, counting each move as lost for now
+            while (true) {
+                int i;
+                Node child;
+                synchronized (node) {
+                    if (node.moves == null) expand(node, board, player, opponent);
+                    if (node.moves.length == 0) {
+                        over = true;
+                        break;
+                    }
+                    i = select(node);
+                    node.visits[i]++;
+                    node.total++;
+                    child = node.children[i];
+                    if (child == null && node.visits[i] > 1) child = node.children[i] = new Node();
+                }
+                if (depth == path.length) {
+                    path = Arrays.copyOf(path, 2 * depth);
+                    chosen = Arrays.copyOf(chosen, 2 * depth);
+                }
+                path[depth] = node;
+                chosen[depth++] = i;
+                board.makeMove(node.moves[i], player);
+                winner = board.winner();
+                if (winner != null || board.isFull()) {
+                    over = true;
+                    break;
+                }
+                Player swap = player;
+                player = opponent;
+                opponent = swap;
+                if (child == null) break; // a move tried for the first time: play out from here
+                node = child;
+            }
+
+            if (!over) winner = playout(board, player, opponent, random);
+
+            // Take the moves back, crediting each to the player who made it
+            for (int d = depth - 1; d >= 0; d--) {
+                Node parent = path[d];
+                Player made = d % 2 == 0 ? mover : other;
+                float result = winner == null ? 0.5f : winner == made ? 1 : 0;
+                synchronized (parent) {
+                    parent.wins[chosen[d]] += result;
+                }
+            }
+            while (board.moveCount() > start) board.unmakeMove();
+        }
+    }
+
+    /**
+     * Fill in the moves of the node from the position on the board: the
+     * five of the player to move if there is one, else the block of a five
+     * of the opponent, else every empty place next to a stone in the move
+     * order.
+     */
+    private void expand(Node node, Board board, Player player, Player opponent) {
+        int[] moves;
+        if (board.fivePointCount(player) > 0) {
+            moves = new int[] {board.fivePoint(player, 0)};
+        } else if (board.fivePointCount(opponent) > 0) {
+            moves = new int[] {board.fivePoint(opponent, 0)};
+        } else {
+            moves = order.order(board, adjacent(board), -1, player, opponent);
+        }
+        node.moves = moves;
+        node.children = new Node[moves.length];
+        node.visits = new int[moves.length];
+        node.wins = new float[moves.length];
+    }
+
+    /** Return the move of the node to walk down by UCT; moves never tried come first, in order. */
+    private static int select(Node node) {
+        double log = Math.log(Math.max(1, node.total));
+        int best = 0;
+        double bestValue = Double.NEGATIVE_INFINITY;
+        for (int i = 0; i < node.moves.length; i++) {
+            int visits = node.visits[i];
+            if (visits == 0) return i;
+            double value = node.wins[i] / visits + EXPLORATION * Math.sqrt(log / visits);
+            if (value > bestValue) {
+                bestValue = value;
+                best = i;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Finish the game from the position on the board with quick moves and
+     * return the winner, or null for a draw. A player makes five when it
+     * can, else blocks a five of the other, else makes a four half the
+     * time when it can, else plays next to a random stone.
+     */
+    private static Player playout(Board board, Player player, Player opponent, Random random) {
+        for (int move = 0; move < PLAYOUT_MOVES; move++) {
+            if (board.isFull()) return null;
+            if (board.fivePointCount(player) > 0) return player;
+            int fives = board.fivePointCount(opponent);
+            int place;
+            if (fives > 1) {
+                return opponent;
+            } else if (fives == 1) {
+                place = board.fivePoint(opponent, 0);
+            } else if (board.fourPointCount(player) > 0 && random.nextBoolean()) {
+                place = board.fourPoint(player, random.nextInt(board.fourPointCount(player)));
+            } else {
+                place = randomNearby(board, random);
+            }
+            board.makeMove(place, player);
+            Player swap = player;
+            player = opponent;
+            opponent = swap;
+        }
+        return null;
+    }
+
+    /** Return a random empty place next to a stone, or any empty place if a few tries find none. */
+    private static int randomNearby(Board board, Random random) {
+        int n = board.size();
+        for (int tries = 0; tries < 16; tries++) {
+            int stone = board.occupiedIndex(random.nextInt(board.stoneCount()));
+            int x = stone / n + random.nextInt(3) - 1, y = stone % n + random.nextInt(3) - 1;
+            if (x >= 0 && y >= 0 && x < n && y < n && board.isEmpty(x, y)) return x * n + y;
+        }
+        int start = random.nextInt(n * n);
+        for (int i = 0; i < n * n; i++) {
+            int place = (start + i) % (n * n);
+            if (board.isEmpty(place)) return place;
+        }
+        throw new IllegalStateException("The board is full");
+    }
+
+    /** Return the empty places next to a stone, or the center of an empty board. */
+    private static int[] adjacent(Board board) {
+        int n = board.size();
+        if (board.stoneCount() == 0) return new int[] {(n - 1) / 2 * n + (n - 1) / 2};
+        return Neighbours.of(board);
+    }
+}
@@ -0,0 +1,52 @@
+package omok;
+
+/**
+ * A move the computer picked: the place to play, and the depth of the
+ * search that picked it.
+ */
+public final class Move {
+    /** 0-based column index of the place to play. */
+    public final int x;
+
+    /** 0-based row index of the place to play. */
+    public final int y;
+
+    /**
+     * Depth in plies of the deepest search completed for the move, or 0
+     * for a move that was not searched to a depth: from the book, a forced
+     * win or the Monte Carlo search.
+     */
+    public final int depth;
+
+    /**
+     * Create a move.
+     *
+     * @param x     0-based column (vertical) index
+     * @param y     0-based row (horizontal) index
+     * @param depth depth of the search that picked the move, or 0
+     */
+    public Move(int x, int y, int depth) {
+        this.x = x;
+        this.y = y;
+        this.depth = depth;
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        if (this == other) { return true; }
+        if (other == null) { return false; }
+        if (getClass() != other.getClass()) { return false; }
+        Move move = (Move) other;
+        return x == move.x && y == move.y && depth == move.depth;
+    }
+
+    @Override
+    public int hashCode() {
+        return (x << 16 ^ y) * 31 + depth;
+    }
+
+    @Override
+    public String toString() {
+        return "(" + x + ", " + y + ") at depth " + depth;
+    }
+}
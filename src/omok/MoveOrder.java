@@ -0,0 +1,130 @@
+package omok;
+
+import java.util.Arrays;
+
+/**
+ * Orders the moves of a position for the search, most promising first:
+ * the best move stored for the position, moves that make five, moves
+ * that block a five of the opponent, the killer moves of the ply, and
+ * then the rest by their history and a static score.
+ * <p>
+ * Killer moves are the last moves that caused a cutoff at a ply; they
+ * often refute the other moves there as well. The history adds up, per
+ * side and place, how deep the cutoffs caused by a stone there were.
+ * Threads searching at once share both and update them without locks:
+ * a lost update only costs ordering, never a wrong score.
+ */
+final class MoveOrder {
+    private static final int KILLERS = 2;
+
+    /** Plies with killers of their own; the ply of a position is its number of stones. */
+    private static final int PLIES = 64;
+
+    /** Upper limit of a history entry, so that it fits its bits of the sort key. */
+    private static final int MAX_HISTORY = (1 << 24) - 1;
+
+    private static final int TABLE_MOVE = 6, FIVE = 5, BLOCK = 4, KILLER = 3, SECOND_KILLER = 2, QUIET = 1;
+
+    /** Killer moves per ply, as index + 1, or 0 for none. */
+    private final int[][] killers = new int[PLIES][KILLERS];
+
+    /** History per side and place, or null on boards wider than {@link Geometry#MAX_TABLE_SIZE}. */
+    private int[][] history;
+    private int historySize;
+
+    /**
+     * Start a search on the given board: killers are dropped, the
+     * history of earlier searches counts half as much.
+     */
+    void newSearch(Board board) {
+        for (int[] killer : killers) Arrays.fill(killer, 0);
+        if (board.size() > Geometry.MAX_TABLE_SIZE) {
+            history = null;
+        } else if (history == null || historySize != board.size()) {
+            history = new int[2][board.size() * board.size()];
+        } else {
+            for (int[] side : history) {
+                for (int i = 0; i < side.length; i++) side[i] >>= 1;
+            }
+        }
+        historySize = board.size();
+    }
+
+    /**
+     * Sort the moves of the player to move, most promising first; moves
+     * that rank the same keep their order.
+     *
+     * @param tableMove best move stored for the position, or -1
+     * @return the moves, sorted in place
+     */
+    int[] order(Board board, int[] moves, int tableMove, Player mover, Player other) {
+        ThreatMap threats = board.threatMap();
+        int own = board.knownSide(mover), their = board.knownSide(other);
+        int[] killer = killers[board.stoneCount() & PLIES - 1];
+        int[][] history = this.history;
+        int[] sideHistory = own >= 0 && history != null && historySize == board.size() ? history[own] : null;
+
+        long[] keys = new long[moves.length];
+        for (int i = 0; i < moves.length; i++) {
+            int move = moves[i];
+            long rank;
+            if (move == tableMove) rank = TABLE_MOVE;
+            else if (own >= 0 && threats.fivePoints(own).contains(move)) rank = FIVE;
+            else if (their >= 0 && threats.fivePoints(their).contains(move)) rank = BLOCK;
+            else if (move + 1 == killer[0]) rank = KILLER;
+            else if (move + 1 == killer[1]) rank = SECOND_KILLER;
+            else rank = QUIET;
+            long score = sideHistory == null ? 0 : sideHistory[move];
+            keys[i] = rank << 56 | score << 24 | staticScore(board, threats, move, own, their);
+        }
+
+        // Insertion sort, best first: there are few moves, and it is stable
+        for (int i = 1; i < moves.length; i++) {
+            long key = keys[i];
+            int move = moves[i];
+            int j = i - 1;
+            for (; j >= 0 && keys[j] < key; j--) {
+                keys[j + 1] = keys[j];
+                moves[j + 1] = moves[j];
+            }
+            keys[j + 1] = key;
+            moves[j + 1] = move;
+        }
+        return moves;
+    }
+
+    /**
+     * Record that the move of the player caused a cutoff in the position
+     * on the board, searched to the given depth.
+     */
+    void cutoff(Board board, int move, int depth, Player mover) {
+        int[] killer = killers[board.stoneCount() & PLIES - 1];
+        if (killer[0] != move + 1) {
+            killer[1] = killer[0];
+            killer[0] = move + 1;
+        }
+        int side = board.knownSide(mover);
+        int[][] history = this.history;
+        if (side >= 0 && history != null && historySize == board.size()) {
+            history[side][move] = Math.min(MAX_HISTORY, history[side][move] + depth * depth);
+        }
+    }
+
+    /**
+     * Return a cheap score of the move: the fours it makes or blocks,
+     * counted by the windows they are in, and the stones next to it.
+     */
+    private static int staticScore(Board board, ThreatMap threats, int move, int own, int their) {
+        int score = 0;
+        if (own >= 0) score += 4 * threats.fourPoints(own).count(move);
+        if (their >= 0) score += 2 * threats.fourPoints(their).count(move);
+        int n = board.size(), x = move / n, y = move % n;
+        for (int dx = -1; dx <= 1; dx++) {
+            for (int dy = -1; dy <= 1; dy++) {
+                int nx = x + dx, ny = y + dy;
+                if (nx >= 0 && ny >= 0 && nx < n && ny < n && !board.isEmpty(nx, ny)) score++;
+            }
+        }
+        return score;
+    }
+}
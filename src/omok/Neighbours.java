@@ -0,0 +1,88 @@
+package omok;
+
+import java.util.Arrays;
+
+/**
+ * The empty places next to the stones of a board, which are the moves
+ * the searches try. Each place is listed once: boards up to
+ * {@link Geometry#MAX_TABLE_SIZE} mark the places listed in a bitset over
+ * the board, a few longs on a common board, and larger boards, which are
+ * sparse, in an {@link IntMap}, so that the cost follows the number of
+ * stones rather than the area.
+ */
+final class Neighbours {
+    /** Places listed so far, on a small board; null on a large one. */
+    private final long[] bits;
+
+    /** Places listed so far, on a large board; null on a small one. */
+    private final IntMap map;
+
+    private Neighbours(int size) {
+        if (size <= Geometry.MAX_TABLE_SIZE) {
+            bits = new long[(size * size + 63) >>> 6];
+            map = null;
+        } else {
+            bits = null;
+            map = new IntMap();
+        }
+    }
+
+    /** Return the empty places next to a stone, in the order of the stones. */
+    static int[] of(Board board) {
+        return of(board, new int[0]);
+    }
+
+    /**
+     * Return the given places, then the empty places next to a stone that
+     * are not among them. A place given twice is listed once.
+     */
+    static int[] of(Board board, int[] first) {
+        int n = board.size();
+        Neighbours listed = new Neighbours(n);
+        int[] places = new int[first.length + 8 * board.stoneCount()];
+        int count = 0;
+        for (int place : first) {
+            if (listed.add(place)) places[count++] = place;
+        }
+        for (int i = 0; i < board.stoneCount(); i++) {
+            int stone = board.occupiedIndex(i);
+            for (int dx = -1; dx <= 1; dx++) {
+                for (int dy = -1; dy <= 1; dy++) {
+                    int x = stone / n + dx, y = stone % n + dy;
+                    if (x < 0 || y < 0 || x >= n || y >= n || !board.isEmpty(x, y)) continue;
+                    int place = x * n + y;
+                    if (listed.add(place)) places[count++] = place;
+                }
+            }
+        }
+        return Arrays.copyOf(places, count);
+    }
+
+    /** Return the empty places around (x, y). */
+    static int[] around(Board board, int x, int y) {
+        int n = board.size();
+        int[] places = new int[8];
+        int count = 0;
+        for (int dx = -1; dx <= 1; dx++) {
+            for (int dy = -1; dy <= 1; dy++) {
+                int nx = x + dx, ny = y + dy;
+                if (nx < 0 || ny < 0 || nx >= n || ny >= n || !board.isEmpty(nx, ny)) continue;
+                places[count++] = nx * n + ny;
+            }
+        }
+        return Arrays.copyOf(places, count);
+    }
+
+    /** Mark the place listed; return false if it already was. */
+    private boolean add(int place) {
+        if (bits != null) {
+            long mask = 1L << place;
+            if ((bits[place >>> 6] & mask) != 0) return false;
+            bits[place >>> 6] |= mask;
+            return true;
+        }
+        if (map.get(place) != 0) return false;
+        map.put(place, 1);
+        return true;
+    }
+}
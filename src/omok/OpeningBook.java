@@ -0,0 +1,301 @@
+package omok;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+
+/**
+ * A book of replies to opening positions, read from a memory-mapped file.
+ * Positions are looked up by their hash, taken over the eight rotations
+ * and reflections of the board: a position and its mirror images share
+ * one entry, and the reply is turned back to the board as it stands.
+ * <p>
+ * The file holds a header of four ints: the magic number, the version,
+ * the board size and the number of entries. Then come the entries of 16
+ * bytes, sorted by key: the key (a long), the reply as a place index on
+ * the normalized board (an int) and its weight (an int). A position with
+ * several replies has one entry per reply. Books are made with a
+ * {@link Builder}, from game records or from self-play.
+ */
+public final class OpeningBook {
+    private static final int MAGIC = 0x4f4d4b42; // "OMKB"
+    private static final int VERSION = 1;
+    private static final int HEADER = 16, ENTRY = 16;
+
+    private final ByteBuffer entries;
+    private final int size;
+    private final int count;
+
+    private OpeningBook(ByteBuffer entries, int size, int count) {
+        this.entries = entries;
+        this.size = size;
+        this.count = count;
+    }
+
+    /**
+     * Map the book in the given file.
+     *
+     * @throws IOException if the file cannot be read or is not a book
+     */
+    public static OpeningBook open(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long length = channel.size();
+            if (length < HEADER) {
+                throw new IOException("Not an opening book: " + path);
+            }
+            ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, length);
+            int size = buffer.getInt(8), count = buffer.getInt(12);
+            if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION || size < 1
+                    || count < 0 || length != HEADER + (long) count * ENTRY) {
+                throw new IOException("Not an opening book: " + path);
+            }
+            return new OpeningBook(buffer, size, count);
+        }
+    }
+
+    /** Return the size of the boards this book is for. */
+    public int boardSize() {
+        return size;
+    }
+
+    /** Return the number of entries, one per reply to a position. */
+    public int entryCount() {
+        return count;
+    }
+
+    /**
+     * Return a reply to the position on the board, picked at random in
+     * proportion to the weights of the replies; or -1 if the position is
+     * not in the book, or the board is of another size.
+     *
+     * @return the index of the place to play
+     */
+    public int move(Board board, Random random) {
+        if (board.size() != size) return -1;
+        long[] hashes = hashes(board);
+        int symmetry = normalizing(hashes);
+        long key = hashes[symmetry];
+
+        int first = firstEntry(key);
+        long total = 0;
+        int last = first;
+        for (; last < count && key(last) == key; last++) {
+            total += weight(last);
+        }
+        if (first == last || total <= 0) return -1;
+
+        long pick = (long) (random.nextDouble() * total);
+        for (int i = first; i < last; i++) {
+            pick -= weight(i);
+            if (pick < 0) {
+                int move = entries.getInt(HEADER + i * ENTRY + 8);
+                if (move < 0 || move >= size * size) return -1;
+                move = inverse(symmetry, move, size);
+                return board.isEmpty(move) ? move : -1;
+            }
+        }
+        return -1;
+    }
+
+    /** Return the first entry with the key, or where it would be. */
+    private int firstEntry(long key) {
+        int lo = 0, hi = count;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (key(mid) < key) lo = mid + 1;
+            else hi = mid;
+        }
+        return lo;
+    }
+
+    private long key(int entry) {
+        return entries.getLong(HEADER + entry * ENTRY);
+    }
+
+    private int weight(int entry) {
+        return entries.getInt(HEADER + entry * ENTRY + 12);
+    }
+
+    /**
+     * Return the hash of the stones on the board under each of the eight
+     * symmetries, see {@link #transform}. Side 0 is the first player, as
+     * in {@link Board#hash()}.
+     */
+    private static long[] hashes(Board board) {
+        Geometry geometry = board.geometry();
+        long[] hashes = new long[8];
+        for (int i = 0; i < board.stoneCount(); i++) {
+            int index = board.occupiedIndex(i);
+            int side = board.knownSide(board.playerAt(index));
+            for (int t = 0; t < 8; t++) {
+                hashes[t] ^= geometry.key(transform(t, index, board.size()), side);
+            }
+        }
+        return hashes;
+    }
+
+    /** Return the symmetry with the smallest hash, which every mirror image of the position shares. */
+    private static int normalizing(long[] hashes) {
+        int best = 0;
+        for (int t = 1; t < hashes.length; t++) {
+            if (hashes[t] < hashes[best]) best = t;
+        }
+        return best;
+    }
+
+    /**
+     * Return the index of the place the symmetry t moves the place with
+     * the given index to. Bit 2 of t swaps x and y, then bit 0 mirrors x
+     * and bit 1 mirrors y.
+     */
+    static int transform(int t, int index, int size) {
+        int x = index / size, y = index % size;
+        if ((t & 4) != 0) { int swap = x; x = y; y = swap; }
+        if ((t & 1) != 0) x = size - 1 - x;
+        if ((t & 2) != 0) y = size - 1 - y;
+        return x * size + y;
+    }
+
+    /** Return the index of the place that the symmetry t moves to the place with the given index. */
+    static int inverse(int t, int index, int size) {
+        int x = index / size, y = index % size;
+        if ((t & 1) != 0) x = size - 1 - x;
+        if ((t & 2) != 0) y = size - 1 - y;
+        if ((t & 4) != 0) { int swap = x; x = y; y = swap; }
+        return x * size + y;
+    }
+
+    /**
+     * Collects weighted replies to positions and writes them as a book.
+     * Replies to mirror images of a position are merged, and the weights
+     * of the same reply add up.
+     */
+    public static final class Builder {
+        private final int size;
+        private final Map<Long, Map<Integer, Integer>> replies = new HashMap<>();
+
+        /** Start an empty book for boards of the given size. */
+        public Builder(int size) {
+            if (size < 1) {
+                throw new IllegalArgumentException("Board size must be positive: " + size);
+            }
+            this.size = size;
+        }
+
+        /**
+         * Add a reply to the position on the board.
+         *
+         * @param move   index of the place to play, which must be empty
+         * @param weight how often the reply is to be picked, relative to the
+         *               other replies to the position
+         * @throws IllegalArgumentException if the board is of another size,
+         *                                  the place is not empty or the
+         *                                  weight is negative
+         */
+        public Builder add(Board board, int move, int weight) {
+            if (board.size() != size) {
+                throw new IllegalArgumentException("Board of size " + board.size() + " in a book for size " + size);
+            }
+            if (!board.isEmpty(move)) {
+                throw new IllegalArgumentException("Place " + move + " is not empty");
+            }
+            if (weight < 0) {
+                throw new IllegalArgumentException("Negative weight: " + weight);
+            }
+            long[] hashes = hashes(board);
+            int symmetry = normalizing(hashes);
+            replies.computeIfAbsent(hashes[symmetry], key -> new HashMap<>())
+                    .merge(transform(symmetry, move, size), weight, Integer::sum);
+            return this;
+        }
+
+        /**
+         * Add the opening of a game: every one of its first plies moves is
+         * a reply to the position before it. The moves of the player who
+         * won the game weigh 2, all others 1.
+         *
+         * @param moves indexes of the places played, in order, the first
+         *              player first
+         * @param plies number of moves to add at most
+         */
+        public Builder addGame(int[] moves, int plies) {
+            Player[] players = {new Player("first", 'X'), new Player("second", 'O')};
+            Board board = new Board(size);
+            for (int move : moves) {
+                board.placeStone(move, players[board.stoneCount() % 2]);
+                if (board.winner() != null) break;
+            }
+            Player winner = board.winner();
+
+            board.clear();
+            for (int i = 0; i < Math.min(plies, moves.length) && board.winner() == null; i++) {
+                Player player = players[i % 2];
+                add(board, moves[i], player == winner ? 2 : 1);
+                board.placeStone(moves[i], player);
+            }
+            return this;
+        }
+
+        /**
+         * Add the openings of games the two computers play against each
+         * other, the first computer moving first. They are set as each
+         * other's opponent.
+         *
+         * @param games number of games to play
+         * @param plies number of moves of each game to add at most
+         */
+        public Builder addSelfPlay(Computer first, Computer second, int games, int plies) {
+            first.setOpponent(second);
+            second.setOpponent(first);
+            Computer[] players = {first, second};
+            for (int game = 0; game < games; game++) {
+                Board board = new Board(size);
+                List<Integer> moves = new ArrayList<>();
+                while (board.winner() == null && !board.isFull()) {
+                    Computer player = players[moves.size() % 2];
+                    int[] move = player.makeMove(board);
+                    int index = board.index(move[0], move[1]);
+                    board.placeStone(index, player);
+                    moves.add(index);
+                }
+                addGame(moves.stream().mapToInt(Integer::intValue).toArray(), plies);
+            }
+            return this;
+        }
+
+        /**
+         * Write the book to the given file, replacing it.
+         *
+         * @throws IOException if the file cannot be written
+         */
+        public void write(Path path) throws IOException {
+            TreeMap<Long, Map<Integer, Integer>> sorted = new TreeMap<>(replies);
+            int count = 0;
+            for (Map<Integer, Integer> moves : sorted.values()) count += moves.size();
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(path)))) {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.writeInt(size);
+                out.writeInt(count);
+                for (Map.Entry<Long, Map<Integer, Integer>> position : sorted.entrySet()) {
+                    for (Map.Entry<Integer, Integer> reply : new TreeMap<>(position.getValue()).entrySet()) {
+                        out.writeLong(position.getKey());
+                        out.writeInt(reply.getKey());
+                        out.writeInt(reply.getValue());
+                    }
+                }
+            }
+        }
+    }
+}
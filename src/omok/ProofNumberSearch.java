@@ -0,0 +1,271 @@
+package omok;
+
+import java.util.Arrays;
+
+/**
+ * Depth-first proof-number search (df-pn), which proves a position won,
+ * lost or drawn for the player to move instead of scoring it. Each node
+ * counts how many of its leaves at least would still have to be proven
+ * (its proof number) or disproven (its disproof number) to settle it, and
+ * the search always expands the node that is cheapest to settle. It is
+ * far cheaper than deepening minimax in sharp positions, where most moves
+ * are forced and a few replies decide the game.
+ * <p>
+ * The numbers are kept in a table of fixed size, so the search runs in
+ * bounded memory: a node whose entry was replaced is searched again. A
+ * search gives up after placing a given number of stones, or, from
+ * {@link #proveWin}, at a deadline. As in the
+ * minimax search, only places next to a stone are tried, so a proof holds
+ * against every reply there. The search works on a snapshot, so the board
+ * passed in is left as it was.
+ */
+public final class ProofNumberSearch {
+    /** The value of a position for the player to move. */
+    public enum Result { WIN, LOSS, DRAW, UNKNOWN }
+
+    /** Proof number of a node that cannot be proven; sums are capped at it. */
+    private static final int INFINITY = 1 << 28;
+
+    /** Stones placed between readings of the clock; a power of two. */
+    private static final int CLOCK_INTERVAL = 64;
+
+    /** Thrown through the search when the node budget is spent; it carries no stack trace. */
+    private static final class OutOfBudget extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        OutOfBudget() {
+            super(null, null, false, false);
+        }
+    }
+
+    private final int budget;
+    private final long[] keys;
+    private final int[] phis, deltas;
+    private int nodes;
+    private long deadline;
+    private int move;
+    private Board board;
+    private Player attacker;
+
+    /**
+     * Create a search that gives up after placing the given number of
+     * stones, with a table of the given number of nodes.
+     *
+     * @param entries number of nodes in the table; rounded down to a power of two, at least 2
+     * @throws IllegalArgumentException if budget is negative
+     */
+    public ProofNumberSearch(int budget, int entries) {
+        if (budget < 0) {
+            throw new IllegalArgumentException("Negative node budget: " + budget);
+        }
+        this.budget = budget;
+        int size = Integer.highestOneBit(Math.max(2, entries));
+        keys = new long[size];
+        phis = new int[size];
+        deltas = new int[size];
+    }
+
+    /**
+     * Return the value of the position for the player to move: WIN if it
+     * wins by force, LOSS if the other player does, DRAW if neither can
+     * and UNKNOWN if the budget ran out first.
+     */
+    public Result solve(Board board, Player mover, Player other) {
+        this.board = board.snapshot();
+        this.nodes = 0;
+        this.deadline = System.nanoTime() + Long.MAX_VALUE / 2;
+        this.move = -1;
+        try {
+            // First whether the mover wins, then whether the other player does
+            if (prove(mover, other, mover)) return Result.WIN;
+            move = -1;
+            if (prove(mover, other, other)) {
+                move = -1;
+                return Result.LOSS;
+            }
+            return Result.DRAW;
+        } catch (OutOfBudget e) {
+            move = -1;
+            return Result.UNKNOWN;
+        } finally {
+            this.board = null;
+        }
+    }
+
+    /**
+     * Return the first move of a forced win of the player to move, or -1
+     * if there is none or the search gave up first, at the budget or at
+     * the deadline. Unlike {@link #solve} it does not go on to look for a
+     * loss.
+     *
+     * @param deadline a System.nanoTime() value; the clock is read every
+     *                 {@link #CLOCK_INTERVAL} stones
+     */
+    public int proveWin(Board board, Player mover, Player other, long deadline) {
+        this.board = board.snapshot();
+        this.nodes = 0;
+        this.deadline = deadline;
+        this.move = -1;
+        try {
+            if (!prove(mover, other, mover)) move = -1;
+        } catch (OutOfBudget e) {
+            move = -1;
+        } finally {
+            this.board = null;
+        }
+        return move;
+    }
+
+    /**
+     * Return the value, for the player to move, of the position before
+     * each move of a game, solved as by {@link #solve}.
+     *
+     * @param size  size of the board
+     * @param moves indexes of the places played, in order, the first player first
+     */
+    public Result[] annotate(int size, int[] moves) {
+        Player[] players = {new Player("first", 'X'), new Player("second", 'O')};
+        Board board = new Board(size);
+        Result[] results = new Result[moves.length];
+        for (int i = 0; i < moves.length; i++) {
+            results[i] = solve(board, players[i % 2], players[1 - i % 2]);
+            board.placeStone(moves[i], players[i % 2]);
+        }
+        return results;
+    }
+
+    /**
+     * Return the winning move found by the last search, or the move that
+     * holds the draw; -1 if the position was lost or not solved.
+     */
+    public int move() {
+        return move;
+    }
+
+    /** Return the number of stones placed by the last search. */
+    public int nodes() {
+        return nodes;
+    }
+
+    /** Return whether the attacker wins by force, the mover to move. */
+    private boolean prove(Player mover, Player other, Player attacker) {
+        this.attacker = attacker;
+        Arrays.fill(phis, 0);
+        Arrays.fill(deltas, 0);
+        long result = search(mover, other, board.hash(), INFINITY, INFINITY, true);
+        int phi = (int) (result >>> 32), delta = (int) result;
+        return mover == attacker ? phi == 0 : delta == 0;
+    }
+
+    /**
+     * Search the position until its proof numbers reach the thresholds,
+     * and return them: phi, the number for the mover to reach its aim, in
+     * the high half, and delta, the number for the other player, in the low
+     * half. The aim of the attacker is five in a row; the aim of the other
+     * player is to keep the attacker from it.
+     */
+    private long search(Player mover, Player other, long key, int phiLimit, int deltaLimit, boolean root) {
+        long terminal = terminal(mover, other);
+        if (terminal >= 0) {
+            if (root && board.fivePointCount(mover) > 0) move = board.fivePoint(mover, 0);
+            return store(key, terminal);
+        }
+
+        int[] moves = moves(mover, other);
+        int side = board.knownSide(mover);
+        if (side < 0) side = board.knownSide(other) == 0 ? 1 : 0;
+        long[] childKeys = new long[moves.length];
+        int[] childPhis = new int[moves.length], childDeltas = new int[moves.length];
+        for (int i = 0; i < moves.length; i++) {
+            childKeys[i] = key ^ board.geometry().key(moves[i], side);
+            int slot = slot(childKeys[i]);
+            boolean known = keys[slot] == childKeys[i] && (phis[slot] | deltas[slot]) != 0;
+            childPhis[i] = known ? phis[slot] : 1;
+            childDeltas[i] = known ? deltas[slot] : 1;
+        }
+
+        while (true) {
+            // The mover needs one child lost for the other player, and the other player all of them
+            int phi = INFINITY, delta = 0, best = 0, second = INFINITY;
+            for (int i = 0; i < moves.length; i++) {
+                delta = (int) Math.min(INFINITY, (long) delta + childPhis[i]);
+                if (childDeltas[i] < phi) {
+                    second = phi;
+                    phi = childDeltas[i];
+                    best = i;
+                } else if (childDeltas[i] < second) {
+                    second = childDeltas[i];
+                }
+            }
+            if (phi >= phiLimit || delta >= deltaLimit) {
+                if (root && phi == 0) move = moves[best];
+                return store(key, (long) phi << 32 | delta);
+            }
+
+            int childPhiLimit = (int) Math.min(INFINITY, (long) deltaLimit + childPhis[best] - delta);
+            int childDeltaLimit = (int) Math.min(phiLimit, (long) second + 1);
+            play(moves[best], mover);
+            try {
+                long result = search(other, mover, childKeys[best], childPhiLimit, childDeltaLimit, false);
+                childPhis[best] = (int) (result >>> 32);
+                childDeltas[best] = (int) result;
+            } finally {
+                board.unmakeMove();
+            }
+        }
+    }
+
+    /** Return the proof numbers of a position the game has decided, as {@link #search} does, or -1. */
+    private long terminal(Player mover, Player other) {
+        long won = INFINITY, lost = (long) INFINITY << 32;
+        if (board.fivePointCount(mover) > 0) {
+            // A five of the defender keeps the attacker from one just as well
+            return won;
+        }
+        if (board.fivePointCount(other) > 1) return lost;
+        if (board.stoneCount() == (long) board.size() * board.size()) {
+            // The board is full without five in a row
+            return mover == attacker ? lost : won;
+        }
+        return -1;
+    }
+
+    /**
+     * Return the moves of the mover: the block of a four of the other
+     * player if there is one, else every empty place next to a stone, the
+     * moves that make or block a four first.
+     */
+    private int[] moves(Player mover, Player other) {
+        if (board.fivePointCount(other) == 1) return new int[] {board.fivePoint(other, 0)};
+        int n = board.size();
+        if (board.stoneCount() == 0) return new int[] {(n - 1) / 2 * n + (n - 1) / 2};
+
+        int[] fours = new int[board.fourPointCount(mover) + board.fourPointCount(other)];
+        int count = 0;
+        for (Player player : new Player[] {mover, other}) {
+            for (int i = 0; i < board.fourPointCount(player); i++) {
+                fours[count++] = board.fourPoint(player, i);
+            }
+        }
+        return Neighbours.of(board, fours);
+    }
+
+    private long store(long key, long numbers) {
+        int slot = slot(key);
+        keys[slot] = key;
+        phis[slot] = (int) (numbers >>> 32);
+        deltas[slot] = (int) numbers;
+        return numbers;
+    }
+
+    private int slot(long key) {
+        return (int) (key ^ key >>> 32) & keys.length - 1;
+    }
+
+    private void play(int index, Player player) {
+        if (++nodes > budget || (nodes & CLOCK_INTERVAL - 1) == 0 && System.nanoTime() - deadline > 0) {
+            throw new OutOfBudget();
+        }
+        board.makeMove(index, player);
+    }
+}
@@ -0,0 +1,80 @@
+package omok;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * A move the computer is searching for on a thread of its own, see
+ * {@link Computer#startMove(Board)}. The best move so far can be read at
+ * any time; the search can be told to finish at once with it, or be
+ * cancelled when its move is no longer wanted.
+ * <p>
+ * Stopping and cancelling are cooperative: the search checks a flag at
+ * every position it visits, so it ends within about the time to search
+ * one position, or to finish the bounded threat searches run before it.
+ */
+public final class SearchHandle {
+    private final Computer computer;
+    private final CompletableFuture<Move> result = new CompletableFuture<>();
+    private volatile Move best;
+
+    /** Thread running the search, and whether it has been told to end. */
+    Thread thread;
+    volatile boolean ending;
+
+    SearchHandle(Computer computer) {
+        this.computer = computer;
+    }
+
+    /**
+     * Return the future move. It completes with the move played, or
+     * exceptionally if the search failed; it is cancelled by
+     * {@link #cancel()}.
+     */
+    public CompletableFuture<Move> result() {
+        return result;
+    }
+
+    /**
+     * Return the best move found so far: the move of the deepest iteration
+     * the minimax search has completed, or the move played once done; or
+     * null if there is none yet.
+     */
+    public Move bestMove() {
+        return best;
+    }
+
+    /** Return whether the search has ended, with a move or not. */
+    public boolean isDone() {
+        return result.isDone();
+    }
+
+    /** Tell the search to end now and complete with the best move so far. */
+    public void stop() {
+        computer.stopSearch(this);
+    }
+
+    /**
+     * Cancel the search: the future is cancelled at once and no move is
+     * played; the search thread ends soon after.
+     *
+     * @return whether the search was still under way
+     */
+    public boolean cancel() {
+        boolean cancelled = result.cancel(false);
+        computer.stopSearch(this);
+        return cancelled;
+    }
+
+    void update(Move move) {
+        best = move;
+    }
+
+    void complete(Move move) {
+        best = move;
+        result.complete(move);
+    }
+
+    void fail(Throwable failure) {
+        result.completeExceptionally(failure);
+    }
+}
@@ -0,0 +1,88 @@
+package omok;
+
+import java.time.Duration;
+
+/**
+ * What the search for one move of the computer did, see
+ * {@link Computer#getLastStats()}. With helper threads or a pool the
+ * counts add up the work of every thread.
+ */
+public final class SearchStats {
+    private final int depth;
+    private final long nodes, evaluations, cutoffs, firstMoveCutoffs, tableProbes, tableHits;
+    private final long elapsedNanos;
+
+    SearchStats(int depth, long nodes, long evaluations, long cutoffs, long firstMoveCutoffs,
+                long tableProbes, long tableHits, long elapsedNanos) {
+        this.depth = depth;
+        this.nodes = nodes;
+        this.evaluations = evaluations;
+        this.cutoffs = cutoffs;
+        this.firstMoveCutoffs = firstMoveCutoffs;
+        this.tableProbes = tableProbes;
+        this.tableHits = tableHits;
+        this.elapsedNanos = elapsedNanos;
+    }
+
+    /** Return the depth of the deepest iteration completed, or 0 if the move was not searched to a depth. */
+    public int depth() {
+        return depth;
+    }
+
+    /** Return the number of positions visited; for the Monte Carlo engine, of playouts. */
+    public long nodes() {
+        return nodes;
+    }
+
+    /** Return the number of positions scored as leaves. */
+    public long evaluations() {
+        return evaluations;
+    }
+
+    /** Return the number of positions left before all their moves were searched, as one move scored too well. */
+    public long cutoffs() {
+        return cutoffs;
+    }
+
+    /** Return the share of cutoffs caused by the first move searched, 0 if there were none; the closer to 1, the better the move order. */
+    public double firstMoveCutoffRate() {
+        return cutoffs == 0 ? 0 : (double) firstMoveCutoffs / cutoffs;
+    }
+
+    /** Return the number of positions looked up in the transposition table. */
+    public long tableProbes() {
+        return tableProbes;
+    }
+
+    /** Return the share of lookups in the transposition table that found the position, 0 if there were none. */
+    public double tableHitRate() {
+        return tableProbes == 0 ? 0 : (double) tableHits / tableProbes;
+    }
+
+    /** Return the time taken for the move. */
+    public Duration elapsed() {
+        return Duration.ofNanos(elapsedNanos);
+    }
+
+    /** Return the number of nodes per second, 0 if no time was measured. */
+    public double nodesPerSecond() {
+        return elapsedNanos == 0 ? 0 : nodes * 1e9 / elapsedNanos;
+    }
+
+    /**
+     * Return the effective branching factor: the number of moves per
+     * position a tree of the depth reached would need to hold as many
+     * nodes as were visited; 0 if the move was not searched to a depth.
+     */
+    public double branchingFactor() {
+        return depth == 0 || nodes == 0 ? 0 : Math.pow(nodes, 1.0 / depth);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("depth %d, %d nodes, %d evaluations in %.1f ms (%.0f nodes/s), "
+                        + "%d cutoffs (%.0f%% by the first move), branching factor %.2f, table hits %.0f%%",
+                depth, nodes, evaluations, elapsedNanos / 1e6, nodesPerSecond(),
+                cutoffs, 100 * firstMoveCutoffRate(), branchingFactor(), 100 * tableHitRate());
+    }
+}
@@ -0,0 +1,90 @@
+package omok;
+
+/**
+ * Sparse storage for a {@link Board}: a hash map from the index of each
+ * occupied intersection to the side of its stone. Memory follows the
+ * number of stones rather than the area, so boards far larger than a
+ * grid could hold can be played on.
+ */
+class SparseStones implements Stones {
+    private final int size;
+    private final Player[] sides;
+
+    /** Side + 1 of the stone at each occupied index. */
+    private final IntMap stones;
+
+    /**
+     * Create an empty sparse board.
+     *
+     * @param size  number of rows and columns
+     * @param sides side table of the owning board
+     */
+    SparseStones(int size, Player[] sides) {
+        this(size, sides, new IntMap());
+    }
+
+    private SparseStones(int size, Player[] sides, IntMap stones) {
+        this.size = size;
+        this.sides = sides;
+        this.stones = stones;
+    }
+
+    @Override
+    public Player get(int x, int y) {
+        int side = stones.get(index(x, y));
+        return side == 0 ? null : sides[side - 1];
+    }
+
+    @Override
+    public Player get(int index) {
+        if (index < 0 || index >= (long) size * size) {
+            throw new ArrayIndexOutOfBoundsException("Index " + index + " out of bounds for size " + size);
+        }
+        int side = stones.get(index);
+        return side == 0 ? null : sides[side - 1];
+    }
+
+    @Override
+    public void set(int x, int y, Player player) {
+        int i = index(x, y);
+        if (player == null) {
+            stones.remove(i);
+        } else {
+            stones.put(i, player == sides[0] ? 1 : 2);
+        }
+    }
+
+    @Override
+    public void clear() {
+        stones.clear();
+    }
+
+    @Override
+    public boolean isFull() {
+        return stones.size() == (long) size * size;
+    }
+
+    /** Return a new grid holding the current stones; it takes as much memory as a grid board. */
+    @Override
+    public Player[][] toArray() {
+        Player[][] board = new Player[size][size];
+        for (int x = 0; x < size; x++) {
+            for (int y = 0; y < size; y++) {
+                board[x][y] = get(x, y);
+            }
+        }
+        return board;
+    }
+
+    @Override
+    public Stones copy(Player[] sides) {
+        return new SparseStones(size, sides, stones.copy());
+    }
+
+    private int index(int x, int y) {
+        if (x < 0 || y < 0 || x >= size || y >= size) {
+            throw new ArrayIndexOutOfBoundsException("Index (" + x + ", " + y + ") out of bounds for size " + size);
+        }
+        return x * size + y;
+    }
+}
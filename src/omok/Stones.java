@@ -0,0 +1,33 @@
+package omok;
+
+/**
+ * Storage engine behind a {@link Board}. It only knows how to read and
+ * write the stone at an intersection; all game logic stays in the board.
+ */
+interface Stones {
+
+    /** Return the player at (x, y), or null if the place is empty. */
+    Player get(int x, int y) throws ArrayIndexOutOfBoundsException;
+
+    /** Return the player at the place with the index x * size + y, or null if it is empty. */
+    Player get(int index) throws ArrayIndexOutOfBoundsException;
+
+    /** Put a stone of the given player at (x, y); null empties the place. */
+    void set(int x, int y, Player player) throws ArrayIndexOutOfBoundsException;
+
+    /** Remove every stone. */
+    void clear();
+
+    /** Return true if no place is empty. */
+    boolean isFull();
+
+    /** Return the stones as a grid indexed by [x][y]. */
+    Player[][] toArray();
+
+    /**
+     * Return an independent copy of this storage.
+     *
+     * @param sides side table of the board that will own the copy
+     */
+    Stones copy(Player[] sides);
+}
@@ -0,0 +1,224 @@
+package omok;
+
+import java.util.Arrays;
+
+/**
+ * The threats of both sides of a {@link Board}, see {@link Board.Threat},
+ * together with the places where each side would make five (five-points)
+ * and the places where it would make a four (four-points).
+ * <p>
+ * Every threat is a pattern of at most seven places along one line, so a
+ * stone can only change the threats whose places include its own. The
+ * board calls {@link #update} for the place it is about to change and
+ * again once it has changed it; each call only reads the 15 places
+ * around it on the four lines through it.
+ */
+final class ThreatMap {
+    private static final int EMPTY = 0, WALL = 3;
+
+    /** Places read around the changed place on each side, enough for the longest pattern. */
+    private static final int REACH = 7;
+
+    /**
+     * Threats per side by {@link Board.Threat} ordinal, except that the
+     * FOUR entry counts every window of four stones and an empty place,
+     * including the two in each open four.
+     */
+    private final int[][] counts = new int[2][Board.Threat.values().length];
+    private final Points[] fivePoints = {new Points(), new Points()};
+    private final Points[] fourPoints = {new Points(), new Points()};
+
+    /** Scratch line segment: EMPTY, side + 1 or WALL per place; the stones of a third player are walls. */
+    private final int[] cells = new int[2 * REACH + 1];
+
+    /**
+     * Add (sign 1) or remove (sign -1) the threats that include the place
+     * with the given index, as the board stands now.
+     */
+    void update(Board board, int index, int sign) {
+        Geometry.Lines lines = board.geometry().lines();
+        for (int d = 0; d < Geometry.DIRECTIONS.length; d++) {
+            int line = lines.line(d, index), offset = lines.offset(d, index);
+            int step = lines.step[d];
+            for (int p = 0; p < cells.length; p++) {
+                int k = offset - REACH + p;
+                cells[p] = k < 0 || k >= lines.length[line] ? WALL : code(board, index + (k - offset) * step);
+            }
+            count(cells, REACH, REACH, index - REACH * step, step, sign);
+        }
+    }
+
+    /** Count the threats of the board from scratch. */
+    void rebuild(Board board) {
+        clear();
+        Geometry.Lines lines = board.geometry().lines();
+        for (int d = 0; d < Geometry.DIRECTIONS.length; d++) {
+            int step = lines.step[d];
+            for (int line = lines.first[d]; line < lines.first[d + 1]; line++) {
+                // The line with a wall on either side
+                int[] cells = new int[lines.length[line] + 2];
+                cells[0] = cells[cells.length - 1] = WALL;
+                for (int k = 0; k < lines.length[line]; k++) {
+                    cells[k + 1] = code(board, lines.start[line] + k * step);
+                }
+                count(cells, 0, cells.length - 1, lines.start[line] - step, step, 1);
+            }
+        }
+    }
+
+    /**
+     * Add sign times the threats in cells whose places include one of the
+     * positions lo to hi. Position p of cells is the place base + p * step.
+     */
+    private void count(int[] cells, int lo, int hi, int base, int step, int sign) {
+        // Windows of five: fives, fours and the empty places that complete them
+        for (int s = Math.max(0, lo - 4); s <= Math.min(cells.length - 5, hi); s++) {
+            for (int side = 0; side < 2; side++) {
+                int own = 0, empty = 0;
+                for (int k = s; k < s + 5; k++) {
+                    if (cells[k] == side + 1) own++;
+                    else if (cells[k] == EMPTY) empty++;
+                }
+                if (own == 5) {
+                    counts[side][Board.Threat.FIVE.ordinal()] += sign;
+                } else if (own == 4 && empty == 1) {
+                    counts[side][Board.Threat.FOUR.ordinal()] += sign;
+                    addEmpty(fivePoints[side], cells, s, base, step, sign);
+                } else if (own == 3 && empty == 2) {
+                    addEmpty(fourPoints[side], cells, s, base, step, sign);
+                }
+            }
+        }
+
+        // Windows of six: 011110, 011010 and 010110
+        for (int s = Math.max(0, lo - 5); s <= Math.min(cells.length - 6, hi); s++) {
+            if (cells[s] != EMPTY || cells[s + 5] != EMPTY) continue;
+            for (int side = 0; side < 2; side++) {
+                // Bit k - 1 set for a stone of the side at s + k
+                int own = 0, empty = 0;
+                for (int k = 1; k < 5; k++) {
+                    if (cells[s + k] == side + 1) own |= 1 << k - 1;
+                    else if (cells[s + k] == EMPTY) empty++;
+                }
+                if (own == 0b1111) counts[side][Board.Threat.OPEN_FOUR.ordinal()] += sign;
+                else if (empty == 1 && (own == 0b1011 || own == 0b1101)) counts[side][Board.Threat.SPLIT_THREE.ordinal()] += sign;
+            }
+        }
+
+        // 01110 with another empty place on either side
+        for (int s = Math.max(1, lo - 5); s <= Math.min(cells.length - 6, hi + 1); s++) {
+            if (cells[s] != EMPTY || cells[s + 4] != EMPTY) continue;
+            if (cells[s - 1] != EMPTY && cells[s + 5] != EMPTY) continue;
+            int stone = cells[s + 1];
+            if (stone == EMPTY || stone == WALL || cells[s + 2] != stone || cells[s + 3] != stone) continue;
+            counts[stone - 1][Board.Threat.OPEN_THREE.ordinal()] += sign;
+        }
+    }
+
+    private static void addEmpty(Points points, int[] cells, int s, int base, int step, int sign) {
+        for (int k = s; k < s + 5; k++) {
+            if (cells[k] == EMPTY) points.add(base + k * step, sign);
+        }
+    }
+
+    private static int code(Board board, int index) {
+        Player player = board.playerAt(index);
+        if (player == null) return EMPTY;
+        int side = board.side(player);
+        return side < 0 ? WALL : side + 1; // a stone of a third player blocks both sides
+    }
+
+    /** Return the number of threats of the side. */
+    int count(int side, Board.Threat threat) {
+        int count = counts[side][threat.ordinal()];
+        if (threat == Board.Threat.FOUR) count -= 2 * counts[side][Board.Threat.OPEN_FOUR.ordinal()];
+        return count;
+    }
+
+    /** Return the five-points of the side. */
+    Points fivePoints(int side) {
+        return fivePoints[side];
+    }
+
+    /** Return the four-points of the side. */
+    Points fourPoints(int side) {
+        return fourPoints[side];
+    }
+
+    void clear() {
+        for (int side = 0; side < 2; side++) {
+            Arrays.fill(counts[side], 0);
+            fivePoints[side].clear();
+            fourPoints[side].clear();
+        }
+    }
+
+    ThreatMap copy() {
+        ThreatMap copy = new ThreatMap();
+        for (int side = 0; side < 2; side++) {
+            System.arraycopy(counts[side], 0, copy.counts[side], 0, counts[side].length);
+            copy.fivePoints[side] = fivePoints[side].copy();
+            copy.fourPoints[side] = fourPoints[side].copy();
+        }
+        return copy;
+    }
+
+    /**
+     * Places counted with multiplicity: a place is a five-point once for
+     * every window it completes. The distinct places can be listed in
+     * constant time each.
+     */
+    static final class Points {
+        private final IntMap counts;
+        private final IndexSet places;
+
+        Points() {
+            this(new IntMap(), IndexSet.sparse(Integer.MAX_VALUE));
+        }
+
+        private Points(IntMap counts, IndexSet places) {
+            this.counts = counts;
+            this.places = places;
+        }
+
+        private void add(int index, int sign) {
+            int count = counts.get(index) + sign;
+            if (count == 0) {
+                counts.remove(index);
+                places.remove(index);
+            } else {
+                counts.put(index, count);
+                places.add(index);
+            }
+        }
+
+        /** Return whether the place with the given index is one of the points. */
+        boolean contains(int index) {
+            return counts.get(index) != 0;
+        }
+
+        /** Return in how many windows the place with the given index is a point, 0 if in none. */
+        int count(int index) {
+            return counts.get(index);
+        }
+
+        /** Return the number of distinct places. */
+        int size() {
+            return places.size();
+        }
+
+        /** Return the index of the i-th place, 0 &lt;= i &lt; size(). */
+        int get(int i) {
+            return places.get(i);
+        }
+
+        private void clear() {
+            counts.clear();
+            places.clear();
+        }
+
+        private Points copy() {
+            return new Points(counts.copy(), places.copy());
+        }
+    }
+}
@@ -0,0 +1,253 @@
+package omok;
+
+import java.util.Arrays;
+
+/**
+ * Threat-space search for forced wins. The attacker only plays moves the
+ * defender has to answer, so the tree stays narrow however deep the win
+ * lies:
+ * <ul>
+ *     <li>VCF (victory by continuous fours): every move of the attacker
+ *     makes a four, and the defender can only block the five.</li>
+ *     <li>VCT (victory by continuous threats): the attacker may also make
+ *     an open or split three. The defender then blocks the three or
+ *     answers with a four of its own, and every such answer has to lose.</li>
+ * </ul>
+ * The search deepens one attacker move at a time, so the shortest wins are
+ * found first and a wide tree of threes does not hide a short win by fours.
+ * A win found is forced; a win not found within the node budget may still
+ * exist. The search works on a snapshot, so the board passed in is left
+ * as it was.
+ */
+public final class ThreatSearch {
+    /** Moves of the attacker along one line of play at most. */
+    private static final int MAX_MOVES = 40;
+
+    /** Stones placed between readings of the clock; a power of two. */
+    private static final int CLOCK_INTERVAL = 64;
+
+    /** Thrown through the search when the node budget is spent; it carries no stack trace. */
+    private static final class OutOfBudget extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        OutOfBudget() {
+            super(null, null, false, false);
+        }
+    }
+
+    private final int budget;
+    private final long deadline;
+    private int nodes;
+    private Board board;
+    private Player attacker, defender;
+    private boolean threes;
+
+    /** Moves of the attacker the current iteration looks ahead, and whether it had to stop there. */
+    private int limit;
+    private boolean limited;
+
+    /**
+     * Create a search that gives up after placing the given number of stones.
+     *
+     * @throws IllegalArgumentException if budget is negative
+     */
+    public ThreatSearch(int budget) {
+        this(budget, System.nanoTime() + Long.MAX_VALUE / 2);
+    }
+
+    /**
+     * Create a search that gives up after placing the given number of
+     * stones, or once the deadline has passed. The clock is read every
+     * {@link #CLOCK_INTERVAL} stones.
+     *
+     * @param deadline a System.nanoTime() value
+     * @throws IllegalArgumentException if budget is negative
+     */
+    public ThreatSearch(int budget, long deadline) {
+        if (budget < 0) {
+            throw new IllegalArgumentException("Negative node budget: " + budget);
+        }
+        this.budget = budget;
+        this.deadline = deadline;
+    }
+
+    /**
+     * Return the index of the first move of a win by continuous fours for
+     * the attacker, who is to move, or -1 if none is found.
+     */
+    public int findVcf(Board board, Player attacker, Player defender) {
+        return find(board, attacker, defender, false);
+    }
+
+    /**
+     * Return the index of the first move of a win by continuous fours and
+     * threes for the attacker, who is to move, or -1 if none is found.
+     */
+    public int findVct(Board board, Player attacker, Player defender) {
+        return find(board, attacker, defender, true);
+    }
+
+    /** Return the number of stones placed by the last search. */
+    public int nodes() {
+        return nodes;
+    }
+
+    private int find(Board board, Player attacker, Player defender, boolean threes) {
+        this.board = board.snapshot();
+        this.attacker = attacker;
+        this.defender = defender;
+        this.threes = threes;
+        this.nodes = 0;
+        try {
+            for (limit = 1; limit <= MAX_MOVES; limit++) {
+                limited = false;
+                int move = attack(0);
+                if (move >= 0 || !limited) return move;
+            }
+            return -1;
+        } catch (OutOfBudget e) {
+            return -1;
+        } finally {
+            this.board = null;
+        }
+    }
+
+    /** Return a move with which the attacker, to move, wins by force, or -1. */
+    private int attack(int moves) {
+        if (board.fivePointCount(attacker) > 0) return board.fivePoint(attacker, 0);
+        if (moves >= limit) {
+            limited = true;
+            return -1;
+        }
+
+        // A four of the defender has to be blocked first
+        int forced = board.fivePointCount(defender);
+        if (forced > 1) return -1;
+        int[] candidates = forced == 1 ? new int[] {board.fivePoint(defender, 0)} : candidates();
+
+        for (int move : candidates) {
+            if (wins(move, moves)) return move;
+        }
+        return -1;
+    }
+
+    /** Return whether the attacker wins by force with the move. */
+    private boolean wins(int move, int moves) {
+        int threesBefore = threeCount(attacker);
+        play(move, attacker);
+        try {
+            if (board.fivePointCount(defender) > 0) return false;
+            int fives = board.fivePointCount(attacker);
+            if (fives > 1) return true;
+            if (fives == 1) {
+                // A four: the defender has to block it
+                play(board.fivePoint(attacker, 0), defender);
+                try {
+                    return attack(moves + 1) >= 0;
+                } finally {
+                    board.unmakeMove();
+                }
+            }
+            if (!threes || threeCount(attacker) <= threesBefore) return false;
+
+            // A three: every answer that blocks it, and every four, has to lose
+            for (int reply : replies(move)) {
+                play(reply, defender);
+                try {
+                    if (attack(moves + 1) < 0) return false;
+                } finally {
+                    board.unmakeMove();
+                }
+            }
+            return true;
+        } finally {
+            board.unmakeMove();
+        }
+    }
+
+    /**
+     * Return the moves of the attacker that make a four, followed, in a
+     * search for VCT, by those that make a three.
+     */
+    private int[] candidates() {
+        int fours = board.fourPointCount(attacker);
+        int[] moves = new int[fours];
+        for (int i = 0; i < fours; i++) moves[i] = board.fourPoint(attacker, i);
+        if (!threes) return moves;
+
+        // A three is made two places away from a stone of the attacker at most
+        IntMap seen = new IntMap();
+        for (int move : moves) seen.put(move + 1, 1);
+        int count = moves.length;
+        int before = threeCount(attacker);
+        for (int i = 0; i < board.stoneCount(); i++) {
+            int stone = board.occupiedIndex(i);
+            if (board.playerAt(stone) != attacker) continue;
+            for (int[] direction : Geometry.DIRECTIONS) {
+                for (int k = -2; k <= 2; k++) {
+                    int place = near(stone, direction, k);
+                    if (place < 0 || seen.get(place + 1) != 0) continue;
+                    seen.put(place + 1, 1);
+                    play(place, attacker);
+                    boolean three = threeCount(attacker) > before;
+                    board.unmakeMove();
+                    if (three) {
+                        if (count == moves.length) moves = Arrays.copyOf(moves, 2 * count + 4);
+                        moves[count++] = place;
+                    }
+                }
+            }
+        }
+        return Arrays.copyOf(moves, count);
+    }
+
+    /**
+     * Return the answers of the defender to the three the attacker made
+     * with the move: the moves on its lines that leave the attacker fewer
+     * threes, and every move that makes a four. Any other answer lets the
+     * attacker make an open four.
+     */
+    private int[] replies(int move) {
+        IntMap seen = new IntMap();
+        int fours = board.fourPointCount(defender);
+        int[] replies = new int[fours + 4 * 10];
+        int count = 0;
+        for (int i = 0; i < fours; i++) {
+            int place = board.fourPoint(defender, i);
+            seen.put(place + 1, 1);
+            replies[count++] = place;
+        }
+        int before = threeCount(attacker);
+        for (int[] direction : Geometry.DIRECTIONS) {
+            for (int k = -5; k <= 5; k++) {
+                int place = near(move, direction, k);
+                if (place < 0 || seen.get(place + 1) != 0) continue;
+                seen.put(place + 1, 1);
+                play(place, defender);
+                boolean blocks = threeCount(attacker) < before;
+                board.unmakeMove();
+                if (blocks) replies[count++] = place;
+            }
+        }
+        return Arrays.copyOf(replies, count);
+    }
+
+    /** Return the empty place k steps from the index in the direction, or -1 if there is none. */
+    private int near(int index, int[] direction, int k) {
+        int n = board.size();
+        int x = index / n + k * direction[0], y = index % n + k * direction[1];
+        if (k == 0 || x < 0 || y < 0 || x >= n || y >= n || !board.isEmpty(x, y)) return -1;
+        return x * n + y;
+    }
+
+    private int threeCount(Player player) {
+        return board.threats(player, Board.Threat.OPEN_THREE) + board.threats(player, Board.Threat.SPLIT_THREE);
+    }
+
+    private void play(int index, Player player) {
+        if (++nodes > budget || (nodes & CLOCK_INTERVAL - 1) == 0 && System.nanoTime() - deadline > 0) {
+            throw new OutOfBudget();
+        }
+        board.makeMove(index, player);
+    }
+}
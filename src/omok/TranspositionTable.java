@@ -0,0 +1,128 @@
+package omok;
+
+import java.util.Arrays;
+
+/**
+ * A fixed-size table of search results keyed by the hash of a position,
+ * so that a position reached again through another order of moves is
+ * not searched again. Each entry packs its score, best move, depth,
+ * bound type and the search that stored it into one long next to the
+ * key; entries go in buckets of two. The first entry of a bucket keeps
+ * the deepest result of the current search, the second always takes the
+ * newest one.
+ *
+ * <p>Threads searching at once may share a table without locking. Each
+ * key is stored XORed with its entry, and an entry is read once, into a
+ * long that is then decoded; a slot torn by two threads writing it at
+ * the same time no longer matches its key and reads as absent.
+ */
+final class TranspositionTable {
+    /** The score is the value of the position. */
+    static final int EXACT = 1;
+    /** The value is at least the score. */
+    static final int LOWER = 2;
+    /** The value is at most the score. */
+    static final int UPPER = 3;
+
+    /** Deepest depth that can be stored; results that hold at any depth are stored with it. */
+    static final int MAX_DEPTH = 63;
+
+    /** Best moves are stored in 22 bits, which covers boards up to 2048 wide; on larger ones none is kept. */
+    private static final int MOVE_BITS = 22;
+
+    private static final int MOVE_SHIFT = 32, DEPTH_SHIFT = 54, BOUND_SHIFT = 60, GENERATION_SHIFT = 62;
+
+    private final long[] keys;
+    private final long[] data;
+    private int generation;
+
+    /**
+     * Create an empty table.
+     *
+     * @param entries number of entries; rounded down to a power of two, at least 2
+     */
+    TranspositionTable(int entries) {
+        int size = Integer.highestOneBit(Math.max(2, entries));
+        keys = new long[size];
+        data = new long[size];
+    }
+
+    /** Return the number of entries. */
+    int size() {
+        return keys.length;
+    }
+
+    /** Start a new search; entries of older searches are the first to be replaced. */
+    void newSearch() {
+        generation = (generation + 1) & 3;
+    }
+
+    void clear() {
+        Arrays.fill(keys, 0L);
+        Arrays.fill(data, 0L);
+    }
+
+    /** Return the entry of the position with the given key, or 0 if there is none. */
+    long probe(long key) {
+        int slot = bucket(key);
+        long entry = data[slot];
+        if (entry != 0 && (keys[slot] ^ entry) == key) return entry;
+        entry = data[slot + 1];
+        if (entry != 0 && (keys[slot + 1] ^ entry) == key) return entry;
+        return 0;
+    }
+
+    static float score(long entry) {
+        return Float.intBitsToFloat((int) entry);
+    }
+
+    /** Return the best move of the entry, or -1 if there is none. */
+    static int move(long entry) {
+        return (int) (entry >>> MOVE_SHIFT & (1L << MOVE_BITS) - 1) - 1;
+    }
+
+    static int depth(long entry) {
+        return (int) (entry >>> DEPTH_SHIFT & MAX_DEPTH);
+    }
+
+    static int bound(long entry) {
+        return (int) (entry >>> BOUND_SHIFT & 3);
+    }
+
+    /**
+     * Store the result of searching a position.
+     *
+     * @param depth depth searched, at most {@link #MAX_DEPTH}
+     * @param bound {@link #EXACT}, {@link #LOWER} or {@link #UPPER}
+     * @param move  index of the best move, or -1
+     */
+    void store(long key, int depth, int bound, float score, int move) {
+        if (move + 1 >= 1 << MOVE_BITS) move = -1;
+        long entry = Float.floatToRawIntBits(score) & 0xffffffffL
+                | (long) (move + 1) << MOVE_SHIFT
+                | (long) Math.min(depth, MAX_DEPTH) << DEPTH_SHIFT
+                | (long) bound << BOUND_SHIFT
+                | (long) generation << GENERATION_SHIFT;
+
+        int slot = bucket(key);
+        long first = data[slot], second = data[slot + 1];
+        if (second != 0 && (keys[slot + 1] ^ second) == key) {
+            slot++;
+        } else if (first == 0 || (keys[slot] ^ first) != key) {
+            // Keep the first entry if it is a deeper result of this search
+            if (first != 0 && generation(first) == generation && depth(first) > depth) slot++;
+        } else if (generation(first) == generation && depth(first) > depth && bound != EXACT) {
+            return;
+        }
+        keys[slot] = key ^ entry;
+        data[slot] = entry;
+    }
+
+    private static int generation(long entry) {
+        return (int) (entry >>> GENERATION_SHIFT & 3);
+    }
+
+    private int bucket(long key) {
+        return (int) (key ^ key >>> 32) & keys.length - 2;
+    }
+}
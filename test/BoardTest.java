@@ -632,4 +632,601 @@ class BoardTest {
 
         assertEquals(winningRow,board.winningRow());
     }
+
+    /* Test bitboard storage */
+    @Test
+    void testBitboard1() { // bitboard behaves like a grid for single stones
+        board = new Board(15, Board.Storage.BITBOARD);
+        board.placeStone(3,4,player);
+        assertSame(player, board.playerAt(3,4));
+        assertTrue(board.isOccupiedBy(3,4,player));
+        assertTrue(board.isEmpty(4,3));
+        assertSame(player, board.getBoard()[3][4]);
+    }
+
+    @Test
+    void testBitboard2() { // removing a stone empties the place
+        board = new Board(15, Board.Storage.BITBOARD);
+        board.placeStone(14,14,player);
+        board.placeStone(14,14,null);
+        assertTrue(board.isEmpty(14,14));
+        assertTrue(Arrays.deepEquals(new Player[15][15],board.getBoard()));
+    }
+
+    @Test
+    void testBitboard3() { // a row must not wrap onto the next row
+        board = new Board(15, Board.Storage.BITBOARD);
+        board.placeStone(0,12,player);
+        board.placeStone(0,13,player);
+        board.placeStone(0,14,player);
+        board.placeStone(1,0,player);
+        board.placeStone(1,1,player);
+        assertFalse(board.isWonBy(player));
+    }
+
+    @Test
+    void testBitboard4() { // winning row in inverted diagonal direction
+        board = new Board(15, Board.Storage.BITBOARD);
+        List<Board.Place> winningRow = new ArrayList<>();
+        for(int i=4; i>=0; i--) {
+            board.placeStone(14-i,i,player);
+        }
+        for(int i=0; i<5; i++) {
+            winningRow.add(new Board.Place(14-i,i));
+        }
+        assertTrue(board.isWonBy(player));
+        assertEquals(winningRow,board.winningRow());
+    }
+
+    @Test
+    void testBitboard5() { // full board
+        board = new Board(3, Board.Storage.BITBOARD);
+        Player other = new Player("",' ');
+        for(int x=0; x<3; x++) {
+            for(int y=0; y<3; y++) {
+                assertFalse(board.isFull());
+                board.placeStone(x,y,(x+y)%2==0 ? player : other);
+            }
+        }
+        assertTrue(board.isFull());
+    }
+
+    @Test
+    void testBitboard6() { // a third player cannot be stored
+        board = new Board(15, Board.Storage.BITBOARD);
+        board.placeStone(0,0,player);
+        board.placeStone(0,1,new Player("",' '));
+        assertThrows(IllegalArgumentException.class, () -> board.placeStone(0,2,new Player("",' ')));
+    }
+
+    @Test
+    void testBitboard7() { // throw error if move is out of bounds
+        Board bitboard = new Board(15, Board.Storage.BITBOARD);
+        assertThrows(ArrayIndexOutOfBoundsException.class, () -> bitboard.placeStone(15,0,player));
+        assertThrows(ArrayIndexOutOfBoundsException.class, () -> bitboard.isEmpty(0,-1));
+    }
+
+    @Test
+    void testBitboard8() { // runs along a row or a diagonal do not wrap onto the next row
+        board = new Board(15, Board.Storage.BITBOARD);
+        board.placeStone(0,13,player);
+        board.placeStone(0,14,player);
+        board.placeStone(1,0,player);
+        board.placeStone(1,1,player);
+        board.placeStone(3,14,player);
+        board.placeStone(5,0,player);
+        board.placeStone(6,1,player);
+        board.placeStone(7,2,player);
+        board.placeStone(8,0,player);
+        board.placeStone(8,14,player);
+        board.placeStone(9,13,player);
+        board.placeStone(10,12,player);
+        assertEquals(new ArrayList<>(),board.nInARow(4,player));
+        assertEquals(3,board.nInARow(3,player).size());
+    }
+
+    @Test
+    void testBitboard9() { // runs and winning rows are found as on a grid
+        java.util.Random random = new java.util.Random(9);
+        Player other = new Player("",' ');
+        for(int game=0; game<40; game++) {
+            int size = 5 + game % 12;
+            Board grid = new Board(size);
+            Board bitboard = new Board(size, Board.Storage.BITBOARD);
+            for(int i=0; i<size*size*2/3; i++) {
+                int x = random.nextInt(size), y = random.nextInt(size);
+                Player stone = random.nextBoolean() ? player : other;
+                if(grid.isEmpty(x,y)) {
+                    grid.placeStone(x,y,stone);
+                    bitboard.placeStone(x,y,stone);
+                }
+            }
+            for(int n=1; n<=6; n++) {
+                assertEquals(grid.nInARow(n,player),bitboard.nInARow(n,player));
+                assertEquals(grid.nInARow(n,other),bitboard.nInARow(n,other));
+            }
+            assertEquals(grid.winningRow(),bitboard.winningRow());
+        }
+    }
+
+    /* Test incremental win detection */
+    @Test
+    void testPlaceStoneWin1() { // five placed stones win the game
+        for(int i=0; i<5; i++) {
+            assertFalse(board.isWonBy(player));
+            board.placeStone(i,i,player);
+        }
+        assertTrue(board.isWonBy(player));
+        assertSame(player,board.winner());
+    }
+
+    @Test
+    void testPlaceStoneWin2() { // removing a stone of the winning row undoes the win
+        for(int i=0; i<5; i++) {
+            board.placeStone(7,i,player);
+        }
+        board.placeStone(7,2,null);
+        assertFalse(board.isWonBy(player));
+        assertNull(board.winner());
+        assertEquals(new ArrayList<>(),board.winningRow());
+    }
+
+    @Test
+    void testPlaceStoneWin3() { // winning row through the middle of the last stone placed
+        Player newplayer = new Player("",' ');
+        List<Board.Place> winningRow = new ArrayList<>();
+        board.placeStone(0,0,newplayer);
+        for(int i : new int[]{5,6,8,9,7}) {
+            board.placeStone(i,3,player);
+        }
+        for(int i=5; i<10; i++) {
+            winningRow.add(new Board.Place(i,3));
+        }
+        assertFalse(board.isWonBy(newplayer));
+        assertEquals(winningRow,board.winningRow());
+    }
+
+    @Test
+    void testPlaceStoneWin4() { // a grid board holds a third player, whose five still wins
+        Player second = new Player("",' ');
+        Player third = new Player("",' ');
+        board.placeStone(0,0,player);
+        board.placeStone(0,1,second);
+        for(int i=0; i<4; i++) {
+            board.placeStone(5,i,third);
+        }
+        assertSame(third,board.playerAt(5,0));
+        assertNull(board.winner());
+        assertEquals(0,board.threats(player,Board.Threat.FIVE));
+        board.placeStone(5,4,third);
+        assertTrue(board.isWonBy(third));
+        assertSame(third,board.winner());
+        assertFalse(board.isWonBy(player));
+        assertEquals(7,board.stoneCount());
+    }
+
+    @Test
+    void testPlaceStoneWin5() { // a stone of a third player blocks the rows of the others
+        Player second = new Player("",' ');
+        Player third = new Player("",' ');
+        for(int y=5; y<9; y++) {
+            board.placeStone(7,y,player);
+        }
+        board.placeStone(14,14,second);
+        board.placeStone(7,9,third);
+        assertEquals(1,board.fivePointCount(player));
+        assertEquals(7*15+4,board.fivePoint(player,0));
+        long hash = board.hash();
+        board.placeStone(7,9,null);
+        assertNotEquals(hash,board.hash());
+        assertEquals(2,board.fivePointCount(player));
+    }
+
+    /* Test stoneCount() and getOccupiedPositions() */
+    @Test
+    void testStoneCount1() { // count follows placed and removed stones
+        board.placeStone(0,0,player);
+        board.placeStone(3,4,player);
+        board.placeStone(3,4,new Player("",' '));
+        assertEquals(2,board.stoneCount());
+        board.placeStone(0,0,null);
+        board.placeStone(0,0,null);
+        assertEquals(1,board.stoneCount());
+        assertEquals(List.of(new Board.Place(3,4)),board.getOccupiedPositions());
+    }
+
+    @Test
+    void testStoneCount2() { // board filled with placeStone is full
+        board = new Board(3);
+        for(int x=0; x<3; x++) {
+            for(int y=0; y<3; y++) {
+                assertFalse(board.isFull());
+                board.placeStone(x,y,player);
+            }
+        }
+        assertTrue(board.isFull());
+        assertEquals(9,board.getOccupiedPositions().size());
+        board.clear();
+        assertEquals(0,board.stoneCount());
+    }
+
+    @Test
+    void testStoneCount3() { // a deep copy keeps its own occupied positions
+        board.placeStone(7,7,player);
+        Board copy = board.getDeepCopy();
+        copy.placeStone(7,8,player);
+        assertEquals(1,board.getOccupiedPositions().size());
+        assertEquals(2,copy.getOccupiedPositions().size());
+    }
+
+    /* Test hash() */
+    @Test
+    void testHash1() { // empty boards hash to zero
+        assertEquals(0L,board.hash());
+    }
+
+    @Test
+    void testHash2() { // move order does not change the hash
+        Player newplayer = new Player("",' ');
+        Board other = new Board();
+        board.placeStone(7,7,player);
+        board.placeStone(7,8,newplayer);
+        board.placeStone(8,8,player);
+        other.placeStone(8,8,player);
+        other.placeStone(7,8,newplayer);
+        other.placeStone(7,7,player);
+        assertEquals(board.hash(),other.hash());
+        assertNotEquals(0L,board.hash());
+    }
+
+    @Test
+    void testHash3() { // removing a stone restores the previous hash
+        board.placeStone(7,7,player);
+        long hash = board.hash();
+        board.placeStone(3,3,player);
+        assertNotEquals(hash,board.hash());
+        board.placeStone(3,3,null);
+        assertEquals(hash,board.hash());
+    }
+
+    @Test
+    void testHash4() { // the hash depends on the side of the stone
+        Player newplayer = new Player("",' ');
+        Board other = new Board();
+        board.placeStone(0,0,player);
+        board.placeStone(1,1,newplayer);
+        other.placeStone(0,0,player);
+        other.placeStone(1,1,player);
+        assertNotEquals(board.hash(),other.hash());
+    }
+
+    @Test
+    void testHash5() { // storage does not change the hash
+        Board other = new Board(15, Board.Storage.BITBOARD);
+        board.placeStone(4,5,player);
+        other.placeStone(4,5,player);
+        assertEquals(board.hash(),other.hash());
+        assertEquals(board.hash(),board.getDeepCopy().hash());
+    }
+
+    /* Test snapshot() */
+    @Test
+    void testSnapshot1() { // writes to the board are not seen by the snapshot
+        board.placeStone(7,7,player);
+        Board snapshot = board.snapshot();
+        board.placeStone(7,8,player);
+        board.placeStone(7,7,null);
+        assertSame(player,snapshot.playerAt(7,7));
+        assertTrue(snapshot.isEmpty(7,8));
+        assertEquals(1,snapshot.stoneCount());
+    }
+
+    @Test
+    void testSnapshot2() { // writes to the snapshot are not seen by the board
+        Board snapshot = board.snapshot();
+        for(int i=0; i<5; i++) {
+            snapshot.placeStone(0,i,player);
+        }
+        assertTrue(snapshot.isWonBy(player));
+        assertFalse(board.isWonBy(player));
+        assertEquals(0,board.stoneCount());
+        assertEquals(0L,board.hash());
+    }
+
+    @Test
+    void testSnapshot3() { // snapshot of a bitboard
+        board = new Board(15, Board.Storage.BITBOARD);
+        board.placeStone(1,1,player);
+        Board snapshot = board.snapshot();
+        snapshot.clear();
+        assertSame(player,board.playerAt(1,1));
+        assertTrue(snapshot.isEmpty(1,1));
+    }
+
+    @Test
+    void testSnapshot4() { // later writes through getBoard() are not seen by the snapshot
+        Player[][] grid = board.getBoard();
+        grid[0][0] = player;
+        Board snapshot = board.snapshot();
+        grid[0][1] = player;
+        assertSame(player,snapshot.playerAt(0,0));
+        assertTrue(snapshot.isEmpty(0,1));
+        assertSame(player,board.playerAt(0,1));
+    }
+
+    @Test
+    void testSnapshot5() { // a snapshot counts the stones written through getBoard() and keeps them up to date
+        Player other = new Player("other", 'O');
+        Player[][] grid = board.getBoard();
+        for(int i=0; i<4; i++) grid[3][i] = player;
+        grid[4][4] = other;
+        Board snapshot = board.snapshot();
+        Board fresh = new Board();
+        for(int i=0; i<4; i++) fresh.placeStone(3,i,player);
+        fresh.placeStone(4,4,other);
+        assertEquals(5,snapshot.stoneCount());
+        assertEquals(fresh.hash(),snapshot.hash());
+        assertEquals(fresh.threats(player,Board.Threat.FOUR),snapshot.threats(player,Board.Threat.FOUR));
+        assertNull(snapshot.winner());
+        snapshot.placeStone(3,4,player);
+        fresh.placeStone(3,4,player);
+        assertEquals(fresh.hash(),snapshot.hash());
+        assertTrue(snapshot.isWonBy(player));
+        assertSame(player,snapshot.winner());
+        grid[3][4] = other;
+        assertSame(player,snapshot.playerAt(3,4));
+    }
+
+    @Test
+    void testSnapshot6() { // a snapshot with a third player on it still finds its winner
+        Player other = new Player("other", 'O');
+        Player third = new Player("third", 'Z');
+        board.placeStone(0,0,other);
+        Player[][] grid = board.getBoard();
+        grid[7][7] = third;
+        for(int i=0; i<5; i++) grid[2][i] = player;
+        Board snapshot = board.snapshot();
+        assertEquals(board.hash(),snapshot.hash());
+        assertEquals(7,snapshot.stoneCount());
+        assertSame(player,snapshot.winner());
+    }
+
+    /* Test index(), place() and the index methods */
+    @Test
+    void testIndex1() { // index methods agree with (x, y) methods
+        int index = board.index(3,4);
+        assertEquals(3*15+4,index);
+        board.placeStone(index,player);
+        assertSame(player,board.playerAt(3,4));
+        assertSame(player,board.playerAt(index));
+        assertFalse(board.isEmpty(index));
+        assertEquals(index,board.occupiedIndex(0));
+    }
+
+    @Test
+    void testIndex2() { // places are shared, not allocated
+        assertSame(board.place(17),board.place(17));
+        assertSame(board.place(17),new Board().place(17));
+        assertEquals(new Board.Place(1,2),board.place(17));
+    }
+
+    @Test
+    void testIndex3() { // throw error if place is out of bounds
+        assertThrows(ArrayIndexOutOfBoundsException.class, () -> board.index(0,15));
+        assertThrows(ArrayIndexOutOfBoundsException.class, () -> board.place(15*15));
+        assertThrows(ArrayIndexOutOfBoundsException.class, () -> board.placeStone(-1,player));
+    }
+
+    @Test
+    void testPlaceHashCode() { // places on wide boards have distinct hash codes
+        assertNotEquals(new Board.Place(0,256).hashCode(),new Board.Place(1,0).hashCode());
+        assertNotEquals(new Board.Place(1,300).hashCode(),new Board.Place(2,44).hashCode());
+    }
+
+    /* Test line scans */
+    @Test
+    void testLines1() { // four in an inverted diagonal away from the corner
+        List<Board.Place> nInARow = new ArrayList<>();
+        for(int i=0; i<4; i++) {
+            board.placeStone(9-i,3+i,player);
+            nInARow.add(new Board.Place(9-i,3+i));
+        }
+        assertEquals(nInARow,board.nInARow(4,player));
+    }
+
+    @Test
+    void testLines2() { // one stone in a row, or none
+        board.placeStone(7,8,player);
+        assertEquals(List.of(new Board.Place(7,8)),board.nInARow(1,player));
+        assertTrue(board.nInARow(0,player).isEmpty());
+    }
+
+    @Test
+    void testLines3() { // longest run on a diagonal below the main diagonal
+        for(int i=0; i<3; i++) {
+            board.placeStone(5+i,i,player);
+        }
+        assertEquals(3,board.maxStonesInARow(player)[0]);
+    }
+
+    @Test
+    void testLines4() { // nobody wins with empty places
+        board.getBoard();
+        assertFalse(board.isWonBy(null));
+    }
+
+    @Test
+    void testLines5() { // lines of a large board
+        board = new Board(100);
+        for(int i=0; i<5; i++) {
+            board.getBoard()[99-i][60+i] = player;
+        }
+        assertTrue(board.isWonBy(player));
+        assertEquals(new Board.Place(99,60),board.winningRow().iterator().next());
+    }
+
+    /* Test makeMove() and unmakeMove() */
+    @Test
+    void testMakeMove1() { // a move can be taken back
+        board.makeMove(7,7,player);
+        assertEquals(1,board.moveCount());
+        assertEquals(new Board.Place(7,7),board.lastMove());
+        assertEquals(new Board.Place(7,7),board.unmakeMove());
+        assertTrue(board.isEmpty(7,7));
+        assertEquals(0,board.moveCount());
+        assertNull(board.lastMove());
+        assertEquals(0,board.stoneCount());
+    }
+
+    @Test
+    void testMakeMove2() { // taking back a winning move restores the board
+        Player other = new Player("",' ');
+        board.makeMove(0,0,other);
+        long hash = board.hash();
+        for(int i=0; i<5; i++) board.makeMove(3,2+i,player);
+        assertTrue(board.isWonBy(player));
+        board.unmakeMove();
+        assertFalse(board.isWonBy(player));
+        assertNull(board.winner());
+        assertFalse(board.winningRow().iterator().hasNext());
+        for(int i=0; i<4; i++) board.unmakeMove();
+        assertEquals(hash,board.hash());
+        assertSame(other,board.playerAt(0,0));
+    }
+
+    @Test
+    void testMakeMove3() { // moves may not replace stones
+        board.makeMove(1,1,player);
+        assertThrows(IllegalArgumentException.class, () -> board.makeMove(1,1,player));
+        assertThrows(ArrayIndexOutOfBoundsException.class, () -> board.makeMove(15,1,player));
+        assertEquals(1,board.moveCount());
+    }
+
+    @Test
+    void testMakeMove4() { // nothing to take back
+        assertThrows(IllegalStateException.class, () -> board.unmakeMove());
+        board.makeMove(1,1,player);
+        board.clear();
+        assertThrows(IllegalStateException.class, () -> board.unmakeMove());
+    }
+
+    @Test
+    void testMakeMove5() { // snapshots keep their own move stack
+        board.makeMove(1,1,player);
+        Board snapshot = board.snapshot();
+        snapshot.makeMove(2,2,player);
+        board.unmakeMove();
+        assertEquals(0,board.moveCount());
+        assertEquals(2,snapshot.moveCount());
+        assertEquals(new Board.Place(2,2),snapshot.unmakeMove());
+        assertEquals(new Board.Place(1,1),snapshot.lastMove());
+        assertSame(player,snapshot.playerAt(1,1));
+    }
+
+    /* Test sparse storage */
+    @Test
+    void testSparse1() { // sparse board behaves like a grid for single stones
+        board = new Board(15, Board.Storage.SPARSE);
+        board.placeStone(3,4,player);
+        assertSame(player, board.playerAt(3,4));
+        assertTrue(board.isEmpty(4,3));
+        board.placeStone(3,4,null);
+        assertTrue(board.isEmpty(3,4));
+        assertEquals(0, board.stoneCount());
+        assertTrue(Arrays.deepEquals(new Player[15][15],board.getBoard()));
+    }
+
+    @Test
+    void testSparse2() { // winning row on a very large board
+        board = new Board(Board.MAX_SPARSE_SIZE, Board.Storage.SPARSE);
+        List<Board.Place> winningRow = new ArrayList<>();
+        for(int i=0; i<5; i++) {
+            board.makeMove(40000-i,30000+i,player);
+            winningRow.add(new Board.Place(40000-i,30000+i));
+        }
+        assertTrue(board.isWonBy(player));
+        assertEquals(winningRow,board.winningRow());
+        assertEquals(winningRow,board.nInARow(5,player));
+        assertArrayEquals(new int[]{5,2},board.maxStonesInARow(player));
+        assertFalse(board.isFull());
+    }
+
+    @Test
+    void testSparse3() { // scans find the same places as on a grid
+        Board sparse = new Board(15, Board.Storage.SPARSE);
+        Player other = new Player("",' ');
+        int[][] stones = {{2,2},{3,3},{4,4},{7,1},{7,2},{7,4},{1,13},{2,12},{3,11}};
+        for(int[] stone : stones) {
+            board.placeStone(stone[0],stone[1],player);
+            sparse.placeStone(stone[0],stone[1],player);
+        }
+        board.placeStone(5,5,other);
+        sparse.placeStone(5,5,other);
+        board.getBoard(); // the grid now answers by scanning every line
+        for(int n=1; n<=4; n++) {
+            assertEquals(board.nInARow(n,player),sparse.nInARow(n,player));
+        }
+        assertArrayEquals(board.maxStonesInARow(player),sparse.maxStonesInARow(player));
+        assertArrayEquals(board.maxStonesInARow(other),sparse.maxStonesInARow(other));
+    }
+
+    @Test
+    void testSparse4() { // sparse boards have a size limit
+        assertThrows(IllegalArgumentException.class, () -> new Board(Board.MAX_SPARSE_SIZE+1, Board.Storage.SPARSE));
+    }
+
+    /* Test threats() */
+    @Test
+    void testThreats1() { // open four and its five-points
+        for(int y=3; y<7; y++) board.placeStone(7,y,player);
+        assertEquals(1,board.threats(player,Board.Threat.OPEN_FOUR));
+        assertEquals(0,board.threats(player,Board.Threat.FOUR));
+        assertEquals(2,board.fivePointCount(player));
+        assertTrue(board.isFivePoint(player,board.index(7,2)));
+        assertTrue(board.isFivePoint(player,board.index(7,7)));
+    }
+
+    @Test
+    void testThreats2() { // a four blocked by the edge or by the opponent
+        Player other = new Player("",' ');
+        for(int y=0; y<4; y++) board.placeStone(2,y,player);
+        board.placeStone(5,1,other);
+        for(int y=2; y<6; y++) board.placeStone(5,y,player);
+        assertEquals(0,board.threats(player,Board.Threat.OPEN_FOUR));
+        assertEquals(2,board.threats(player,Board.Threat.FOUR));
+        assertEquals(2,board.fivePointCount(player));
+        assertTrue(board.isFivePoint(player,board.index(2,4)));
+        assertTrue(board.isFivePoint(player,board.index(5,6)));
+    }
+
+    @Test
+    void testThreats3() { // open and split threes along the diagonals
+        for(int i=4; i<7; i++) board.placeStone(i,i,player);
+        assertEquals(1,board.threats(player,Board.Threat.OPEN_THREE));
+        board.placeStone(13,1,player);
+        board.placeStone(12,2,player);
+        board.placeStone(10,4,player);
+        assertEquals(1,board.threats(player,Board.Threat.SPLIT_THREE));
+        assertTrue(board.fourPointCount(player) > 0);
+    }
+
+    @Test
+    void testThreats4() { // taking back a move takes back its threats
+        for(int y=3; y<6; y++) board.makeMove(7,y,player);
+        board.makeMove(7,6,player);
+        board.makeMove(7,7,player);
+        assertEquals(1,board.threats(player,Board.Threat.FIVE));
+        board.unmakeMove();
+        board.unmakeMove();
+        assertEquals(0,board.threats(player,Board.Threat.FIVE));
+        assertEquals(1,board.threats(player,Board.Threat.OPEN_THREE));
+        assertEquals(0,board.fivePointCount(player));
+    }
+
+    @Test
+    void testThreats5() { // threats are found on a grid written directly
+        for(int y=3; y<7; y++) board.getBoard()[7][y] = player;
+        assertEquals(1,board.threats(player,Board.Threat.OPEN_FOUR));
+        assertEquals(0,board.threats(new Player("",' '),Board.Threat.OPEN_FOUR));
+    }
 }
\ No newline at end of file
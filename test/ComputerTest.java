@@ -0,0 +1,490 @@
+import omok.Board;
+import omok.Computer;
+import omok.Move;
+import omok.Player;
+import omok.SearchHandle;
+import omok.SearchStats;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ComputerTest {
+    private Board board;
+    private Computer computer;
+    private Player opponent;
+
+    @BeforeEach
+    void setUp() {
+        board = new Board();
+        computer = new Computer("computer", 'O', 3);
+        opponent = new Player("player", 'X');
+        computer.setOpponent(opponent);
+    }
+
+    /* Test makeMove() */
+    @Test
+    void testMakeMove1() { // complete five
+        for(int y=3; y<7; y++) board.placeStone(7,y,computer);
+        board.placeStone(7,2,opponent);
+        for(int x=2; x<5; x++) board.placeStone(x,10,opponent);
+        assertArrayEquals(new int[]{7,7},computer.makeMove(board));
+    }
+
+    @Test
+    void testMakeMove2() { // block a four
+        for(int x=4; x<8; x++) board.placeStone(x,4,opponent);
+        board.placeStone(3,4,computer);
+        board.placeStone(10,10,computer);
+        board.placeStone(11,12,computer);
+        assertArrayEquals(new int[]{8,4},computer.makeMove(board));
+    }
+
+    @Test
+    void testMakeMove3() { // the board searched is left as it was
+        for(int y=3; y<6; y++) board.placeStone(7,y,opponent);
+        board.placeStone(8,4,computer);
+        board.placeStone(9,9,computer);
+        long hash = board.hash();
+        computer.makeMove(board);
+        assertEquals(hash,board.hash());
+        assertEquals(5,board.stoneCount());
+    }
+
+    @Test
+    void testMakeMove4() { // win rather than block a four
+        for(int y=3; y<7; y++) board.placeStone(7,y,computer);
+        board.placeStone(7,2,opponent);
+        for(int x=2; x<6; x++) board.placeStone(x,11,opponent);
+        board.placeStone(1,11,computer);
+        assertArrayEquals(new int[]{7,7},computer.makeMove(board));
+    }
+
+    @Test
+    void testMakeMove5() { // an empty board too small for the opening move has no place to search
+        Board small = new Board(3);
+        assertThrows(IllegalArgumentException.class, () -> computer.makeMove(small));
+        assertThrows(IllegalArgumentException.class, () -> computer.makeMove(small, Duration.ofMillis(50)));
+    }
+
+    @Test
+    void testMakeMove6() { // a double four seen only at depth 3, beyond the window of depth 1, is played
+        computer.setThreatBudget(0);
+        computer.setProofBudget(0);
+        for(int y=3; y<6; y++) board.placeStone(7,y,computer);
+        for(int x=4; x<7; x++) board.placeStone(x,6,computer);
+        board.placeStone(7,2,opponent);
+        board.placeStone(3,6,opponent);
+        board.placeStone(10,10,opponent);
+        board.placeStone(11,12,opponent);
+        board.placeStone(12,3,opponent);
+        board.placeStone(2,12,opponent);
+        assertArrayEquals(new int[]{7,6},computer.makeMove(board));
+    }
+
+    @Test
+    void testMakeMove7() { // a double four of the opponent seen only at depth 3 is blocked
+        computer.setThreatBudget(0);
+        computer.setProofBudget(0);
+        for(int y=3; y<6; y++) board.placeStone(7,y,opponent);
+        for(int x=4; x<7; x++) board.placeStone(x,6,opponent);
+        board.placeStone(7,2,computer);
+        board.placeStone(3,6,computer);
+        board.placeStone(10,10,computer);
+        board.placeStone(11,12,computer);
+        board.placeStone(12,3,computer);
+        board.placeStone(2,12,computer);
+        assertArrayEquals(new int[]{7,6},computer.makeMove(board));
+    }
+
+    /* Test makeMove() with a time budget */
+    @Test
+    void testMakeMoveTimed1() { // complete five
+        for(int y=3; y<7; y++) board.placeStone(7,y,computer);
+        board.placeStone(7,2,opponent);
+        for(int x=2; x<5; x++) board.placeStone(x,10,opponent);
+        assertArrayEquals(new int[]{7,7},computer.makeMove(board, Duration.ofMillis(200)));
+    }
+
+    @Test
+    void testMakeMoveTimed2() { // block a four
+        for(int x=4; x<8; x++) board.placeStone(x,4,opponent);
+        board.placeStone(3,4,computer);
+        board.placeStone(10,10,computer);
+        board.placeStone(11,12,computer);
+        assertArrayEquals(new int[]{8,4},computer.makeMove(board, Duration.ofMillis(200)));
+    }
+
+    @Test
+    void testMakeMoveTimed3() { // the budget is kept, and the board is left as it was
+        for(int y=3; y<6; y++) board.placeStone(7,y,opponent);
+        board.placeStone(8,4,computer);
+        board.placeStone(9,9,computer);
+        long hash = board.hash();
+        computer.makeMove(board, Duration.ofMillis(100)); // warm up
+        long start = System.nanoTime();
+        int[] move = computer.makeMove(board, Duration.ofMillis(100));
+        assertTrue(System.nanoTime() - start < 300_000_000L);
+        assertTrue(board.isEmpty(move[0],move[1]));
+        assertEquals(hash,board.hash());
+    }
+
+    @Test
+    void testMakeMoveTimed4() { // no time at all still gives a move
+        board.placeStone(7,7,opponent);
+        board.placeStone(8,8,computer);
+        board.placeStone(7,8,opponent);
+        int[] move = computer.makeMove(board, Duration.ZERO);
+        assertTrue(board.isEmpty(move[0],move[1]));
+    }
+
+    @Test
+    void testMakeMoveTimed5() { // a long threat search that finds no win is cut off by the budget
+        board.placeStone(7,5,computer);
+        board.placeStone(7,6,computer);
+        board.placeStone(3,3,computer);
+        board.placeStone(3,4,computer);
+        board.placeStone(11,10,computer);
+        board.placeStone(10,10,computer);
+        board.placeStone(7,7,opponent);
+        board.placeStone(7,4,opponent);
+        computer.setThreatBudget(100000);
+        computer.setProofBudget(0);
+        computer.makeMove(board, Duration.ofMillis(20)); // warm up
+        long start = System.nanoTime();
+        int[] move = computer.makeMove(board, Duration.ofMillis(20));
+        assertTrue(System.nanoTime() - start < 200_000_000L);
+        assertTrue(board.isEmpty(move[0],move[1]));
+    }
+
+    /* Test setPool() */
+    @Test
+    void testSetPool1() { // block a four
+        ForkJoinPool pool = new ForkJoinPool(4);
+        computer.setPool(pool);
+        for(int x=4; x<8; x++) board.placeStone(x,4,opponent);
+        board.placeStone(3,4,computer);
+        board.placeStone(10,10,computer);
+        board.placeStone(11,12,computer);
+        assertArrayEquals(new int[]{8,4},computer.makeMove(board));
+        pool.shutdown();
+    }
+
+    @Test
+    void testSetPool2() { // seeded, the pool plays the moves played without it
+        ForkJoinPool pool = new ForkJoinPool(4);
+        board.placeStone(7,7,opponent);
+        board.placeStone(8,8,computer);
+        board.placeStone(6,8,opponent);
+        for(int i=0; i<4; i++) {
+            computer.setPool(null);
+            computer.setTableSize(Computer.DEFAULT_TABLE_SIZE);
+            computer.setSeed(i);
+            int[] move = computer.makeMove(board);
+            computer.setPool(pool);
+            computer.setTableSize(Computer.DEFAULT_TABLE_SIZE);
+            computer.setSeed(i);
+            assertArrayEquals(move,computer.makeMove(board));
+            board.placeStone(move[0],move[1],computer);
+            if(board.isEmpty(move[1],move[0])) board.placeStone(move[1],move[0],opponent);
+            else board.placeStone(14,2*i,opponent);
+        }
+        pool.shutdown();
+    }
+
+    @Test
+    void testSetPool3() { // a time budget is kept in the pool too
+        ForkJoinPool pool = new ForkJoinPool(4);
+        computer.setPool(pool);
+        for(int y=3; y<6; y++) board.placeStone(7,y,opponent);
+        board.placeStone(8,4,computer);
+        board.placeStone(9,9,computer);
+        computer.makeMove(board, Duration.ofMillis(100)); // warm up
+        long start = System.nanoTime();
+        int[] move = computer.makeMove(board, Duration.ofMillis(100));
+        assertTrue(System.nanoTime() - start < 300_000_000L);
+        assertTrue(board.isEmpty(move[0],move[1]));
+        pool.shutdown();
+    }
+
+    /* Test setHelperThreads() */
+    @Test
+    void testSetHelperThreads1() { // block a four
+        computer.setHelperThreads(3);
+        for(int x=4; x<8; x++) board.placeStone(x,4,opponent);
+        board.placeStone(3,4,computer);
+        board.placeStone(10,10,computer);
+        board.placeStone(11,12,computer);
+        assertArrayEquals(new int[]{8,4},computer.makeMove(board));
+    }
+
+    @Test
+    void testSetHelperThreads2() { // the helpers stop with the main search
+        computer.setHelperThreads(2);
+        for(int y=3; y<6; y++) board.placeStone(7,y,opponent);
+        board.placeStone(8,4,computer);
+        board.placeStone(9,9,computer);
+        int threads = Thread.activeCount();
+        long hash = board.hash();
+        int[] move = computer.makeMove(board, Duration.ofMillis(100));
+        assertTrue(board.isEmpty(move[0],move[1]));
+        assertEquals(hash,board.hash());
+        assertTrue(Thread.activeCount() <= threads);
+    }
+
+    @Test
+    void testSetHelperThreads3() { // a negative number is refused
+        assertThrows(IllegalArgumentException.class, () -> computer.setHelperThreads(-1));
+    }
+
+    /* Test setTableSize() */
+    @Test
+    void testSetTableSize() { // a tiny table still finds the win
+        computer.setTableSize(2);
+        for(int y=3; y<7; y++) board.placeStone(7,y,computer);
+        board.placeStone(7,2,opponent);
+        for(int x=2; x<5; x++) board.placeStone(x,10,opponent);
+        assertArrayEquals(new int[]{7,7},computer.makeMove(board));
+    }
+
+    /* Test setProofBudget() */
+    @Test
+    void testSetProofBudget1() { // a negative budget is refused
+        assertThrows(IllegalArgumentException.class, () -> computer.setProofBudget(-1));
+    }
+
+    @Test
+    void testSetProofBudget2() { // the proven win is played with the threat search off
+        computer.setThreatBudget(0);
+        for(int y=4; y<7; y++) board.placeStone(7,y,computer);
+        for(int x=4; x<7; x++) board.placeStone(x,7,computer);
+        board.placeStone(7,3,opponent);
+        board.placeStone(3,7,opponent);
+        board.placeStone(10,10,opponent);
+        board.placeStone(11,12,opponent);
+        board.placeStone(12,3,opponent);
+        board.placeStone(2,12,opponent);
+        assertArrayEquals(new int[]{7,7},computer.makeMove(board));
+    }
+
+    /* Test setEngine() */
+    @Test
+    void testSetEngine1() { // the Monte Carlo search completes five on its own
+        computer.setEngine(Computer.Engine.MONTE_CARLO);
+        computer.setThreatBudget(0);
+        computer.setProofBudget(0);
+        assertEquals(Computer.Engine.MONTE_CARLO,computer.getEngine());
+        for(int y=3; y<7; y++) board.placeStone(7,y,computer);
+        board.placeStone(7,2,opponent);
+        for(int x=2; x<5; x++) board.placeStone(x,10,opponent);
+        assertArrayEquals(new int[]{7,7},computer.makeMove(board));
+    }
+
+    @Test
+    void testSetEngine2() { // the Monte Carlo search blocks a four, with helpers and a time budget
+        computer.setEngine(Computer.Engine.MONTE_CARLO);
+        computer.setHelperThreads(2);
+        for(int x=4; x<8; x++) board.placeStone(x,4,opponent);
+        board.placeStone(3,4,computer);
+        board.placeStone(10,10,computer);
+        board.placeStone(11,12,computer);
+        long hash = board.hash();
+        assertArrayEquals(new int[]{8,4},computer.makeMove(board, Duration.ofMillis(200)));
+        assertEquals(hash,board.hash());
+    }
+
+    @Test
+    void testSetEngine3() { // a Monte Carlo move is on an empty place
+        computer.setEngine(Computer.Engine.MONTE_CARLO);
+        board.placeStone(7,7,opponent);
+        board.placeStone(7,8,computer);
+        board.placeStone(8,8,opponent);
+        int[] move = computer.makeMove(board);
+        assertTrue(board.isEmpty(move[0],move[1]));
+        assertThrows(NullPointerException.class, () -> computer.setEngine(null));
+    }
+
+    @Test
+    void testSetEngine4() { // the Monte Carlo search blocks a four on a very large sparse board
+        board = new Board(Board.MAX_SPARSE_SIZE, Board.Storage.SPARSE);
+        computer.setEngine(Computer.Engine.MONTE_CARLO);
+        int c = Board.MAX_SPARSE_SIZE / 2;
+        for(int x=c; x<c+4; x++) board.placeStone(x,c,opponent);
+        board.placeStone(c-1,c,computer);
+        board.placeStone(c+6,c+6,computer);
+        board.placeStone(c+7,c+8,computer);
+        assertArrayEquals(new int[]{c+4,c},computer.makeMove(board, Duration.ofMillis(200)));
+    }
+
+    /* Test ponder() */
+    @Test
+    void testPonder1() { // without pondering on, nothing is searched
+        board.placeStone(7,7,opponent);
+        board.placeStone(7,8,computer);
+        board.placeStone(8,8,opponent);
+        computer.ponder(board);
+        computer.stopPondering();
+        int[] move = computer.makeMove(board);
+        assertTrue(board.isEmpty(move[0],move[1]));
+    }
+
+    @Test
+    void testPonder2() throws InterruptedException { // the predicted block is searched while the opponent thinks
+        computer.setPondering(true);
+        for(int y=3; y<7; y++) board.placeStone(7,y,computer);
+        board.placeStone(7,2,opponent);
+        for(int x=2; x<5; x++) board.placeStone(x,11,opponent);
+        board.placeStone(9,9,opponent);
+        computer.ponder(board);
+        Thread.sleep(200);
+        long hash = board.hash();
+        board.placeStone(7,7,opponent);
+        assertNotEquals(hash,board.hash());
+        hash = board.hash();
+        int[] move = computer.makeMove(board);
+        assertTrue(move[0] == 1 || move[0] == 5);
+        assertEquals(11,move[1]);
+        assertEquals(hash,board.hash());
+    }
+
+    @Test
+    void testPonder3() { // pondering stops when it is turned off, and the board is left as it was
+        computer.setPondering(true);
+        board.placeStone(7,7,opponent);
+        board.placeStone(7,8,computer);
+        board.placeStone(8,8,opponent);
+        board.placeStone(6,6,computer);
+        long hash = board.hash();
+        computer.ponder(board);
+        computer.setPondering(false);
+        computer.stopPondering();
+        assertEquals(hash,board.hash());
+        assertEquals(4,board.stoneCount());
+    }
+
+    /* Test startMove() */
+    @Test
+    void testStartMove1() { // the future completes with the move
+        for(int y=3; y<7; y++) board.placeStone(7,y,computer);
+        board.placeStone(7,2,opponent);
+        for(int x=2; x<5; x++) board.placeStone(x,10,opponent);
+        SearchHandle search = computer.startMove(board);
+        Move move = search.result().join();
+        assertEquals(7,move.x);
+        assertEquals(7,move.y);
+        assertTrue(search.isDone());
+        assertEquals(move,search.bestMove());
+    }
+
+    @Test
+    void testStartMove2() { // a cancelled search completes no move, and the next one can start at once
+        board.placeStone(7,7,opponent);
+        board.placeStone(7,8,computer);
+        board.placeStone(8,8,opponent);
+        SearchHandle search = computer.startMove(board, Duration.ofMinutes(10));
+        assertTrue(search.cancel());
+        assertTrue(search.result().isCancelled());
+        assertThrows(CancellationException.class, () -> search.result().join());
+        Move move = computer.startMove(board).result().join();
+        assertTrue(board.isEmpty(move.x,move.y));
+        assertEquals(3,move.depth);
+    }
+
+    @Test
+    void testStartMove3() throws InterruptedException { // a stopped search plays the best move so far
+        board.placeStone(7,7,opponent);
+        board.placeStone(7,8,computer);
+        board.placeStone(8,8,opponent);
+        long hash = board.hash();
+        SearchHandle search = computer.startMove(board, Duration.ofMinutes(10));
+        while(search.bestMove() == null) Thread.sleep(10);
+        search.stop();
+        Move move = search.result().join();
+        assertTrue(move.depth >= 1);
+        assertTrue(board.isEmpty(move.x,move.y));
+        assertEquals(hash,board.hash());
+    }
+
+    @Test
+    void testStartMove4() { // one search at a time
+        board.placeStone(7,7,opponent);
+        board.placeStone(7,8,computer);
+        board.placeStone(8,8,opponent);
+        SearchHandle search = computer.startMove(board, Duration.ofMinutes(10));
+        assertThrows(IllegalStateException.class, () -> computer.startMove(board));
+        search.cancel();
+    }
+
+    @Test
+    void testStartMove5() throws InterruptedException { // the move pondered to the full depth is played without a search
+        computer.setPondering(true);
+        for(int y=3; y<7; y++) board.placeStone(7,y,computer);
+        board.placeStone(7,2,opponent);
+        for(int x=2; x<5; x++) board.placeStone(x,11,opponent);
+        board.placeStone(9,9,opponent);
+        computer.ponder(board);
+        Thread.sleep(500);
+        board.placeStone(7,7,opponent);
+        Move move = computer.startMove(board).result().join();
+        assertTrue(move.x == 1 || move.x == 5);
+        assertEquals(11,move.y);
+        assertEquals(3,move.depth);
+        assertEquals(0,computer.getLastStats().nodes());
+    }
+
+    /* Test getLastStats() */
+    @Test
+    void testGetLastStats1() { // no statistics before the first move
+        assertNull(computer.getLastStats());
+    }
+
+    @Test
+    void testGetLastStats2() { // a searched move reports its depth, nodes and rates
+        board.placeStone(7,7,opponent);
+        board.placeStone(7,8,computer);
+        board.placeStone(8,8,opponent);
+        computer.makeMove(board);
+        SearchStats stats = computer.getLastStats();
+        assertEquals(3,stats.depth());
+        assertTrue(stats.nodes() > 0);
+        assertTrue(stats.evaluations() > 0 && stats.evaluations() <= stats.nodes());
+        assertTrue(stats.cutoffs() > 0);
+        assertTrue(stats.firstMoveCutoffRate() > 0 && stats.firstMoveCutoffRate() <= 1);
+        assertTrue(stats.tableHitRate() >= 0 && stats.tableHitRate() <= 1);
+        assertTrue(stats.branchingFactor() > 1);
+        assertTrue(stats.nodesPerSecond() > 0);
+    }
+
+    @Test
+    void testGetLastStats3() { // the listener gets the statistics of each move
+        List<SearchStats> reported = new ArrayList<>();
+        computer.setStatsListener(reported::add);
+        board.placeStone(7,7,opponent);
+        computer.makeMove(board);
+        assertEquals(1,reported.size());
+        assertSame(computer.getLastStats(),reported.get(0));
+    }
+
+    @Test
+    void testGetLastStats4() { // the tasks of the pool and the helpers all count
+        ForkJoinPool pool = new ForkJoinPool(4);
+        computer.setPool(pool);
+        computer.setHelperThreads(2);
+        board.placeStone(7,7,opponent);
+        board.placeStone(7,8,computer);
+        board.placeStone(8,8,opponent);
+        computer.makeMove(board);
+        SearchStats stats = computer.getLastStats();
+        assertEquals(3,stats.depth());
+        assertTrue(stats.nodes() > 0);
+        assertTrue(stats.evaluations() > 0 && stats.evaluations() <= stats.nodes());
+        assertEquals(stats.nodes(),stats.tableProbes()); // one probe per node, none lost between threads
+        pool.shutdown();
+    }
+}
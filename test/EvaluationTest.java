@@ -0,0 +1,178 @@
+import omok.Board;
+import omok.Computer;
+import omok.Player;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Checks the computer's evaluation, which is private to it and reached
+ * through reflection here.
+ */
+class EvaluationTest {
+    private Computer computer;
+    private Player opponent;
+
+    @BeforeEach
+    void setUp() {
+        computer = new Computer("computer", 'O', 3);
+        opponent = new Player("player", 'X');
+        computer.setOpponent(opponent);
+    }
+
+    /* Test the running score kept by evalDelta() */
+    @Test
+    void testEvalDelta1() { // grid board
+        checkRunningScore(new Board(15), 15, 1);
+    }
+
+    @Test
+    void testEvalDelta2() { // bitboard
+        checkRunningScore(new Board(15, Board.Storage.BITBOARD), 15, 2);
+    }
+
+    @Test
+    void testEvalDelta3() { // sparse board, stones in a corner of a large one
+        checkRunningScore(new Board(1000, Board.Storage.SPARSE), 12, 3);
+    }
+
+    @Test
+    void testEvalDelta4() { // small board, where most windows touch an edge
+        checkRunningScore(new Board(7), 7, 4);
+    }
+
+    /* Test the pattern tables compiled from scoreFromPosition */
+    @Test
+    void testPatternTables1() { // every window of five and six scores as its pattern
+        Map<?, ?> patterns = (Map<?, ?>) field("scoreFromPosition");
+        int[][] tables = {(int[]) field("fiveScores"), (int[]) field("sixScores")};
+        for(int length=5; length<=6; length++) {
+            int[] table = tables[length - 5];
+            assertEquals((int) Math.pow(3, length), table.length);
+            for(int code=0; code<table.length; code++) {
+                String window = window(code, length);
+                Number score = (Number) patterns.get(window);
+                assertEquals(score == null ? 0 : score.intValue(), table[code], window);
+            }
+        }
+    }
+
+    @Test
+    void testPatternTables2() { // the evaluation equals matching every window of every line against the patterns
+        Random random = new Random(5);
+        for(int game=0; game<20; game++) {
+            Board board = new Board(5 + game % 11);
+            int stones = random.nextInt(board.size() * board.size() / 2 + 1);
+            for(int i=0; i<stones; i++) {
+                int index = random.nextInt(board.size() * board.size());
+                if(board.isEmpty(index)) board.placeStone(index, random.nextBoolean() ? computer : opponent);
+            }
+            assertEquals(patternScore(board), evaluate(board), "board " + game);
+        }
+    }
+
+    /** Return the window of the given length with the given base-3 code, as the digits of a pattern. */
+    private static String window(int code, int length) {
+        char[] places = new char[length];
+        for(int i=length-1; i>=0; i--) {
+            places[i] = (char) ('0' + code % 3);
+            code /= 3;
+        }
+        return new String(places);
+    }
+
+    /**
+     * Return the score of the board by matching every window of five and
+     * six places along its rows, columns and both diagonals against the
+     * patterns as strings, the way the tables replaced.
+     */
+    private long patternScore(Board board) {
+        Map<?, ?> patterns = (Map<?, ?>) field("scoreFromPosition");
+        int n = board.size();
+        long score = 0;
+        int[][] directions = {{0, 1}, {1, 0}, {1, 1}, {1, -1}};
+        for(int[] d : directions) {
+            for(int x=0; x<n; x++) {
+                for(int y=0; y<n; y++) {
+                    // Only from the first place of each line
+                    if(x - d[0] >= 0 && y - d[1] >= 0 && y - d[1] < n) continue;
+                    StringBuilder line = new StringBuilder();
+                    for(int i=x, j=y; i<n && j>=0 && j<n; i+=d[0], j+=d[1]) {
+                        Player player = board.playerAt(i, j);
+                        line.append(player == computer ? '1' : player == opponent ? '2' : '0');
+                    }
+                    for(int length=5; length<=6; length++) {
+                        for(int i=0; i+length<=line.length(); i++) {
+                            Number value = (Number) patterns.get(line.substring(i, i + length));
+                            if(value != null) score += value.longValue();
+                        }
+                    }
+                }
+            }
+        }
+        return score;
+    }
+
+    /**
+     * Make and take back random moves of both players in the top left
+     * corner of the board, of the given width, adding the change of every
+     * move to a running score, and compare it with a full evaluation
+     * after each of them.
+     */
+    private void checkRunningScore(Board board, int width, long seed) {
+        Random random = new Random(seed);
+        long[] scores = new long[width * width + 1];
+        scores[0] = evaluate(board);
+        for(int step=0; step<2000; step++) {
+            if(board.moveCount() > 0 && (random.nextInt(3) == 0 || board.moveCount() == width * width)) {
+                board.unmakeMove();
+            } else {
+                int index;
+                do {
+                    index = board.index(random.nextInt(width), random.nextInt(width));
+                } while(!board.isEmpty(index));
+                Player player = random.nextBoolean() ? computer : opponent;
+                scores[board.moveCount() + 1] = scores[board.moveCount()] + evalDelta(board, index, player);
+                board.makeMove(index, player);
+            }
+            assertEquals(evaluate(board), scores[board.moveCount()], "after step " + step);
+        }
+    }
+
+    private long evaluate(Board board) {
+        return (Long) call("evaluate", new Class<?>[] {Board.class}, board);
+    }
+
+    private long evalDelta(Board board, int index, Player player) {
+        return (Long) call("evalDelta", new Class<?>[] {Board.class, int.class, Player.class}, board, index, player);
+    }
+
+    private Object field(String name) {
+        try {
+            Field field = Computer.class.getDeclaredField(name);
+            field.setAccessible(true);
+            return field.get(computer);
+        } catch (ReflectiveOperationException e) {
+            throw new AssertionError(e);
+        }
+    }
+
+    private Object call(String name, Class<?>[] types, Object... args) {
+        try {
+            Method method = Computer.class.getDeclaredMethod(name, types);
+            method.setAccessible(true);
+            return method.invoke(computer, args);
+        } catch (InvocationTargetException e) {
+            throw new AssertionError(e.getCause());
+        } catch (ReflectiveOperationException e) {
+            throw new AssertionError(e);
+        }
+    }
+}
@@ -0,0 +1,115 @@
+import omok.Board;
+import omok.Computer;
+import omok.OpeningBook;
+import omok.Player;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class OpeningBookTest {
+    private Board board;
+    private Player first;
+    private Player second;
+    private Path file;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        board = new Board();
+        first = new Player("first", 'X');
+        second = new Player("second", 'O');
+        file = Files.createTempFile("omok", ".book");
+        file.toFile().deleteOnExit();
+    }
+
+    /* Test move() */
+    @Test
+    void testMove1() throws IOException { // the reply to a position in the book
+        board.placeStone(7,7,first);
+        new OpeningBook.Builder(15).add(board,board.index(6,8),1).write(file);
+        OpeningBook book = OpeningBook.open(file);
+        assertEquals(15,book.boardSize());
+        assertEquals(1,book.entryCount());
+        assertEquals(board.index(6,8),book.move(board,new Random()));
+    }
+
+    @Test
+    void testMove2() throws IOException { // a mirror image of a position gets the mirrored reply
+        board.placeStone(7,7,first);
+        board.placeStone(7,8,second);
+        new OpeningBook.Builder(15).add(board,board.index(6,9),1).write(file);
+        Board rotated = new Board();
+        rotated.placeStone(7,7,first);
+        rotated.placeStone(8,7,second);
+        assertEquals(rotated.index(9,6),OpeningBook.open(file).move(rotated,new Random()));
+        Board mirrored = new Board();
+        mirrored.placeStone(7,7,first);
+        mirrored.placeStone(7,6,second);
+        assertEquals(mirrored.index(6,5),OpeningBook.open(file).move(mirrored,new Random()));
+    }
+
+    @Test
+    void testMove3() throws IOException { // no reply to a position not in the book, or to a board of another size
+        board.placeStone(7,7,first);
+        new OpeningBook.Builder(15).add(board,board.index(6,8),1).write(file);
+        OpeningBook book = OpeningBook.open(file);
+        board.placeStone(6,8,second);
+        assertEquals(-1,book.move(board,new Random()));
+        Board small = new Board(9);
+        small.placeStone(4,4,first);
+        assertEquals(-1,book.move(small,new Random()));
+    }
+
+    @Test
+    void testMove4() throws IOException { // replies are picked by weight
+        board.placeStone(7,7,first);
+        new OpeningBook.Builder(15).add(board,board.index(6,8),3).add(board,board.index(6,7),1).write(file);
+        OpeningBook book = OpeningBook.open(file);
+        int diagonal = 0;
+        Random random = new Random(1);
+        for(int i=0; i<400; i++) {
+            int move = book.move(board,random);
+            assertTrue(move == board.index(6,8) || move == board.index(6,7));
+            if(move == board.index(6,8)) diagonal++;
+        }
+        assertTrue(diagonal > 250 && diagonal < 350);
+    }
+
+    /* Test open() */
+    @Test
+    void testOpen() throws IOException { // a file that is not a book is refused
+        Files.write(file,new byte[] {1,2,3,4,5,6,7,8,9,10,11,12,13,14,15,16});
+        assertThrows(IOException.class, () -> OpeningBook.open(file));
+    }
+
+    /* Test Builder */
+    @Test
+    void testAddGame() throws IOException { // the opening of a game record is in the book
+        int[] moves = {board.index(7,7),board.index(7,8),board.index(8,8)};
+        new OpeningBook.Builder(15).addGame(moves,2).write(file);
+        OpeningBook book = OpeningBook.open(file);
+        assertEquals(2,book.entryCount());
+        assertEquals(board.index(7,7),book.move(board,new Random()));
+        board.placeStone(7,7,first);
+        assertEquals(board.index(7,8),book.move(board,new Random()));
+    }
+
+    @Test
+    void testAdd() { // a reply on an occupied place is refused
+        board.placeStone(7,7,first);
+        assertThrows(IllegalArgumentException.class, () -> new OpeningBook.Builder(15).add(board,board.index(7,7),1));
+    }
+
+    @Test
+    void testAddSelfPlay() throws IOException { // the first move of self-play is in the book
+        Computer black = new Computer("black", 'X', 1);
+        Computer white = new Computer("white", 'O', 1);
+        new OpeningBook.Builder(9).addSelfPlay(black,white,1,1).write(file);
+        assertEquals(new Board(9).index(4,4),OpeningBook.open(file).move(new Board(9),new Random()));
+    }
+}
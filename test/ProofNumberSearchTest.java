@@ -0,0 +1,135 @@
+import omok.Board;
+import omok.Player;
+import omok.ProofNumberSearch;
+import omok.ProofNumberSearch.Result;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ProofNumberSearchTest {
+    private Board board;
+    private Player first;
+    private Player second;
+
+    @BeforeEach
+    void setUp() {
+        board = new Board();
+        first = new Player("first", 'X');
+        second = new Player("second", 'O');
+    }
+
+    /* Test solve() */
+    @Test
+    void testSolve1() { // two closed threes make a double four
+        for(int y=4; y<7; y++) board.placeStone(7,y,first);
+        for(int x=4; x<7; x++) board.placeStone(x,7,first);
+        board.placeStone(7,3,second);
+        board.placeStone(3,7,second);
+        ProofNumberSearch search = new ProofNumberSearch(10000, 1 << 12);
+        assertEquals(Result.WIN,search.solve(board,first,second));
+        assertEquals(board.index(7,7),search.move());
+    }
+
+    @Test
+    void testSolve2() { // an open three makes an open four
+        for(int y=5; y<8; y++) board.placeStone(7,y,first);
+        board.placeStone(0,0,second);
+        board.placeStone(0,14,second);
+        ProofNumberSearch search = new ProofNumberSearch(10000, 1 << 12);
+        assertEquals(Result.WIN,search.solve(board,first,second));
+        assertTrue(search.move() == board.index(7,4) || search.move() == board.index(7,8));
+    }
+
+    @Test
+    void testSolve3() { // an open four cannot be blocked
+        for(int y=5; y<9; y++) board.placeStone(7,y,first);
+        for(int x=0; x<3; x++) board.placeStone(x,0,second);
+        ProofNumberSearch search = new ProofNumberSearch(10000, 1 << 12);
+        assertEquals(Result.LOSS,search.solve(board,second,first));
+        assertEquals(-1,search.move());
+    }
+
+    @Test
+    void testSolve4() { // nobody makes five on a small board
+        Board small = new Board(3);
+        small.placeStone(1,1,first);
+        ProofNumberSearch search = new ProofNumberSearch(100000, 1 << 12);
+        assertEquals(Result.DRAW,search.solve(small,second,first));
+        assertTrue(small.isEmpty(search.move()));
+    }
+
+    @Test
+    void testSolve5() { // out of budget, and the board is left as it was
+        board.placeStone(7,7,first);
+        board.placeStone(7,8,second);
+        long hash = board.hash();
+        ProofNumberSearch search = new ProofNumberSearch(100, 1 << 12);
+        assertEquals(Result.UNKNOWN,search.solve(board,first,second));
+        assertEquals(-1,search.move());
+        assertEquals(hash,board.hash());
+        assertEquals(2,board.stoneCount());
+    }
+
+    @Test
+    void testSolve6() { // a tiny table still proves the win
+        for(int y=4; y<7; y++) board.placeStone(7,y,first);
+        for(int x=4; x<7; x++) board.placeStone(x,7,first);
+        board.placeStone(7,3,second);
+        board.placeStone(3,7,second);
+        assertEquals(Result.WIN,new ProofNumberSearch(10000, 2).solve(board,first,second));
+    }
+
+    /* Test proveWin() */
+    @Test
+    void testProveWin1() { // two closed threes make a double four
+        for(int y=4; y<7; y++) board.placeStone(7,y,first);
+        for(int x=4; x<7; x++) board.placeStone(x,7,first);
+        board.placeStone(7,3,second);
+        board.placeStone(3,7,second);
+        ProofNumberSearch search = new ProofNumberSearch(10000, 1 << 12);
+        assertEquals(board.index(7,7),search.proveWin(board,first,second,System.nanoTime() + 10_000_000_000L));
+        assertEquals(board.index(7,7),search.move());
+    }
+
+    @Test
+    void testProveWin2() { // a drawn position is not solved any further, which takes fewer stones
+        Board small = new Board(3);
+        small.placeStone(1,1,first);
+        ProofNumberSearch search = new ProofNumberSearch(100000, 1 << 12);
+        assertEquals(-1,search.proveWin(small,second,first,System.nanoTime() + 10_000_000_000L));
+        assertEquals(-1,search.move());
+        int nodes = search.nodes();
+        assertEquals(Result.DRAW,search.solve(small,second,first));
+        assertTrue(nodes < search.nodes());
+    }
+
+    @Test
+    void testProveWin3() { // past the deadline, the search stops when it next reads the clock
+        board.placeStone(7,7,first);
+        board.placeStone(7,8,second);
+        long hash = board.hash();
+        ProofNumberSearch search = new ProofNumberSearch(100000, 1 << 12);
+        assertEquals(-1,search.proveWin(board,first,second,System.nanoTime()));
+        assertEquals(64,search.nodes());
+        assertEquals(hash,board.hash());
+    }
+
+    /* Test annotate() */
+    @Test
+    void testAnnotate() { // the first player wins from an open three
+        int[] moves = {board.index(7,5),board.index(0,0),board.index(7,6),board.index(0,1),
+                board.index(7,7),board.index(0,14),board.index(7,8),board.index(1,0),board.index(7,9)};
+        Result[] results = new ProofNumberSearch(10000, 1 << 12).annotate(15,moves);
+        assertEquals(moves.length,results.length);
+        assertEquals(Result.WIN,results[6]);
+        assertEquals(Result.LOSS,results[7]);
+        assertEquals(Result.WIN,results[8]);
+    }
+
+    /* Test ProofNumberSearch() */
+    @Test
+    void testProofNumberSearch() { // a negative budget is refused
+        assertThrows(IllegalArgumentException.class, () -> new ProofNumberSearch(-1, 16));
+    }
+}
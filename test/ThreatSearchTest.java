@@ -0,0 +1,130 @@
+import omok.Board;
+import omok.Player;
+import omok.ThreatSearch;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ThreatSearchTest {
+    private Board board;
+    private Player attacker;
+    private Player defender;
+
+    @BeforeEach
+    void setUp() {
+        board = new Board();
+        attacker = new Player("attacker", 'X');
+        defender = new Player("defender", 'O');
+    }
+
+    /* Test findVcf() */
+    @Test
+    void testFindVcf1() { // complete a four
+        for(int y=3; y<7; y++) board.placeStone(7,y,attacker);
+        board.placeStone(7,2,defender);
+        assertEquals(board.index(7,7),new ThreatSearch(100).findVcf(board,attacker,defender));
+    }
+
+    @Test
+    void testFindVcf2() { // two closed threes make a double four
+        for(int y=4; y<7; y++) board.placeStone(7,y,attacker);
+        for(int x=4; x<7; x++) board.placeStone(x,7,attacker);
+        board.placeStone(7,3,defender);
+        board.placeStone(3,7,defender);
+        assertEquals(board.index(7,7),new ThreatSearch(100).findVcf(board,attacker,defender));
+    }
+
+    @Test
+    void testFindVcf3() { // a four first, then a double four
+        for(int y=4; y<7; y++) board.placeStone(7,y,attacker);
+        board.placeStone(5,7,attacker);
+        board.placeStone(6,7,attacker);
+        board.placeStone(5,4,attacker);
+        board.placeStone(6,5,attacker);
+        board.placeStone(7,3,defender);
+        board.placeStone(4,7,defender);
+        board.placeStone(4,3,defender);
+        int move = new ThreatSearch(1000).findVcf(board,attacker,defender);
+        assertTrue(move >= 0);
+        assertTrue(board.isEmpty(move));
+    }
+
+    @Test
+    void testFindVcf4() { // no fours, no win
+        board.placeStone(7,7,attacker);
+        board.placeStone(7,8,attacker);
+        board.placeStone(8,8,defender);
+        assertEquals(-1,new ThreatSearch(1000).findVcf(board,attacker,defender));
+    }
+
+    @Test
+    void testFindVcf5() { // a four of the defender comes first
+        for(int y=4; y<7; y++) board.placeStone(7,y,attacker);
+        for(int x=4; x<7; x++) board.placeStone(x,7,attacker);
+        board.placeStone(7,3,defender);
+        board.placeStone(3,7,defender);
+        for(int y=1; y<5; y++) board.placeStone(12,y,defender);
+        board.placeStone(12,0,attacker);
+        assertEquals(-1,new ThreatSearch(1000).findVcf(board,attacker,defender));
+    }
+
+    /* Test findVct() */
+    @Test
+    void testFindVct1() { // two open twos make a double three
+        board.placeStone(7,5,attacker);
+        board.placeStone(7,6,attacker);
+        board.placeStone(5,7,attacker);
+        board.placeStone(6,7,attacker);
+        board.placeStone(0,0,defender);
+        board.placeStone(0,14,defender);
+        ThreatSearch search = new ThreatSearch(100000);
+        assertEquals(-1,search.findVcf(board,attacker,defender));
+        int move = search.findVct(board,attacker,defender);
+        assertTrue(move >= 0);
+        assertTrue(board.isEmpty(move));
+    }
+
+    @Test
+    void testFindVct2() { // the board searched is left as it was
+        board.placeStone(7,5,attacker);
+        board.placeStone(7,6,attacker);
+        board.placeStone(5,7,attacker);
+        board.placeStone(6,7,attacker);
+        board.placeStone(0,0,defender);
+        long hash = board.hash();
+        new ThreatSearch(100000).findVct(board,attacker,defender);
+        assertEquals(hash,board.hash());
+        assertEquals(5,board.stoneCount());
+    }
+
+    @Test
+    void testFindVct3() { // out of budget, no win is found
+        board.placeStone(7,5,attacker);
+        board.placeStone(7,6,attacker);
+        board.placeStone(5,7,attacker);
+        board.placeStone(6,7,attacker);
+        board.placeStone(0,0,defender);
+        ThreatSearch search = new ThreatSearch(1);
+        assertEquals(-1,search.findVct(board,attacker,defender));
+        assertEquals(2,search.nodes());
+    }
+
+    @Test
+    void testFindVct4() { // past the deadline, the search stops when it next reads the clock
+        board.placeStone(7,5,attacker);
+        board.placeStone(7,6,attacker);
+        board.placeStone(5,7,attacker);
+        board.placeStone(6,7,attacker);
+        board.placeStone(0,0,defender);
+        ThreatSearch search = new ThreatSearch(100000, System.nanoTime());
+        assertEquals(-1,search.findVct(board,attacker,defender));
+        assertEquals(64,search.nodes());
+    }
+
+    /* Test ThreatSearch() */
+    @Test
+    void testThreatSearch() { // a negative budget is refused
+        assertThrows(IllegalArgumentException.class, () -> new ThreatSearch(-1));
+    }
+}